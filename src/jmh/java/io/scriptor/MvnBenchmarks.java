@@ -0,0 +1,127 @@
+package io.scriptor;
+
+import guru.nidi.graphviz.model.Graph;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the main resolution paths against a synthetic repository. Run
+ * them using {@code mvn -P benchmark test-compile exec:exec}, and pass JMH options
+ * like {@code -Dbenchmark.args="-f 1 -p size=2000 MvnBenchmarks.toTree"}.
+ * <p>
+ * Nothing is ever fetched: the transport fails every request, so a benchmark
+ * touching a missing artifact shows up as a warning instead of network time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MvnBenchmarks {
+
+    @Param({"200", "2000"})
+    public int size;
+
+    @Param({"6"})
+    public int depth;
+
+    @Param({"4"})
+    public int fanOut;
+
+    @Param({"0.5"})
+    public double bomRatio;
+
+    @Param({"0.3"})
+    public double diamondDensity;
+
+    @Param({"64"})
+    public int entries;
+
+    private File mDirectory;
+    private SyntheticRepository mRepository;
+    private MvnArtifact mRoot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("mvntools-benchmark").toFile();
+        mRepository = SyntheticRepository.generate(
+                mDirectory,
+                new SyntheticRepository.Shape(size, depth, fanOut, bomRatio, diamondDensity, entries, 42));
+
+        MvnTools.getLogger().setLevel(java.util.logging.Level.WARNING);
+        MvnTools.setRepository(mDirectory);
+        MvnTools.setTransport((ids, transitive) -> false);
+        MvnTools.setGraphCaching(false);
+
+        mRoot = MvnArtifact.getArtifact(mRepository.getRootId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MvnTools.setRepository(null);
+        MvnTools.setTransport(null);
+        MvnTools.getJarPool().close();
+
+        try (final Stream<Path> paths = Files.walk(mDirectory.toPath())) {
+            for (final var path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+    /**
+     * Resolve the whole graph from scratch, parsing every pom.
+     */
+    @Benchmark
+    public MvnArtifact getArtifactCold() {
+        MvnTools.clearCaches();
+        return MvnArtifact.getArtifact(mRepository.getRootId());
+    }
+
+    /**
+     * Look up the already resolved root.
+     */
+    @Benchmark
+    public MvnArtifact getArtifactWarm() {
+        return MvnArtifact.getArtifact(mRepository.getRootId());
+    }
+
+    @Benchmark
+    public String toTree() {
+        return mRoot.toTree();
+    }
+
+    @Benchmark
+    public Graph generateGraph() {
+        return mRoot.generateGraph();
+    }
+
+    /**
+     * Parse every pom of the repository, bypassing the model cache.
+     */
+    @Benchmark
+    public void getModel(final Blackhole blackhole) {
+        MvnTools.clearCaches();
+        for (final var pom : mRepository.getPoms())
+            blackhole.consume(MvnTools.getModel(pom));
+    }
+
+    /**
+     * List the entries of every package in the closure.
+     */
+    @Benchmark
+    public long scanEntries() {
+        long count = 0;
+        for (final var artifact : mRoot.getClosure())
+            count += artifact.stream().count();
+        return count;
+    }
+}
@@ -0,0 +1,302 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * A synthetic local maven repository of known shape, so resolution can be
+ * measured without network access and without depending on whatever happens to
+ * be in the local repository of the current user.
+ * <p>
+ * The graph is layered: the root sits at level 0, and every artifact depends on
+ * artifacts of the next level only. All artifacts inherit a common parent, which
+ * declares the version property used by the dependencies. Artifacts either
+ * import a bom managing all versions, or declare the versions themselves.
+ */
+public final class SyntheticRepository {
+
+    public static final String GROUP_ID = "io.scriptor.synthetic";
+    public static final String VERSION = "1.0";
+
+    private static final String PARENT = "parent";
+    private static final String BOM = "bom";
+
+    /**
+     * Shape of a synthetic repository
+     *
+     * @param size           the number of jar artifacts, including the root
+     * @param depth          the number of levels, including the root level
+     * @param fanOut         the number of dependencies per artifact above the last
+     *                       level
+     * @param bomRatio       the fraction of artifacts importing the bom instead of
+     *                       declaring versions themselves
+     * @param diamondDensity the fraction of dependencies drawn from a few shared
+     *                       artifacts of the next level, which creates diamonds
+     * @param entries        the number of class entries per jar
+     * @param seed           the random seed, so the same shape always generates
+     *                       the same repository
+     */
+    public record Shape(
+            int size,
+            int depth,
+            int fanOut,
+            double bomRatio,
+            double diamondDensity,
+            int entries,
+            long seed) {
+
+        public Shape {
+            if (depth < 1 || size < depth)
+                throw new IllegalArgumentException("Need at least one artifact per level");
+            if (fanOut < 0 || entries < 0)
+                throw new IllegalArgumentException("Negative fan-out or entries");
+        }
+    }
+
+    /**
+     * Generate a synthetic repository into a directory.
+     *
+     * @param directory the repository directory
+     * @param shape     the shape of the repository
+     * @return the generated repository
+     * @throws IOException if any
+     */
+    @Nonnull
+    public static SyntheticRepository generate(@Nonnull final File directory, @Nonnull final Shape shape) throws IOException {
+        final var random = new Random(shape.seed());
+        final var levels = layout(shape);
+        final List<File> poms = new ArrayList<>();
+
+        poms.add(writePom(directory, PARENT, parentPom()));
+        poms.add(writePom(directory, BOM, bomPom(levels)));
+
+        for (int level = 0; level < levels.size(); ++level) {
+            final var next = level + 1 < levels.size()
+                    ? levels.get(level + 1)
+                    : List.<String>of();
+
+            final var artifacts = levels.get(level);
+            for (int i = 0; i < artifacts.size(); ++i) {
+                final var artifactId = artifacts.get(i);
+                final var dependencies = pickDependencies(shape, random, next, i);
+                final var managed = random.nextDouble() < shape.bomRatio();
+
+                poms.add(writePom(directory, artifactId, artifactPom(artifactId, dependencies, managed)));
+                writeJar(directory, artifactId, shape.entries());
+            }
+        }
+
+        return new SyntheticRepository(directory, levels.get(0).get(0), poms);
+    }
+
+    /**
+     * Distribute the artifacts over the levels. The root level has exactly one
+     * artifact, the others share the rest evenly.
+     */
+    @Nonnull
+    private static List<List<String>> layout(@Nonnull final Shape shape) {
+        final List<List<String>> levels = new ArrayList<>();
+        levels.add(List.of("a-0-0"));
+
+        final var rest = shape.size() - 1;
+        final var count = shape.depth() - 1;
+        for (int level = 1; level <= count; ++level) {
+            final var width = rest / count + (level <= rest % count ? 1 : 0);
+            final List<String> artifacts = new ArrayList<>(width);
+            for (int i = 0; i < width; ++i)
+                artifacts.add("a-%d-%d".formatted(level, i));
+            levels.add(artifacts);
+        }
+        return levels;
+    }
+
+    @Nonnull
+    private static Collection<String> pickDependencies(
+            @Nonnull final Shape shape,
+            @Nonnull final Random random,
+            @Nonnull final List<String> next,
+            final int index) {
+        if (next.isEmpty())
+            return List.of();
+
+        final Set<String> dependencies = new LinkedHashSet<>();
+        final var shared = Math.min(shape.fanOut(), next.size());
+        for (int k = 0; k < shape.fanOut(); ++k) {
+            // either one of the few shared artifacts, or spread over the level
+            final var pick = random.nextDouble() < shape.diamondDensity()
+                    ? random.nextInt(shared)
+                    : (index * shape.fanOut() + k) % next.size();
+            dependencies.add(next.get(pick));
+        }
+        return dependencies;
+    }
+
+    @Nonnull
+    private static String parentPom() {
+        return """
+                <project>
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                  <packaging>pom</packaging>
+                  <properties>
+                    <synthetic.version>%s</synthetic.version>
+                  </properties>
+                </project>
+                """.formatted(GROUP_ID, PARENT, VERSION, VERSION);
+    }
+
+    @Nonnull
+    private static String bomPom(@Nonnull final List<List<String>> levels) {
+        final var managed = new StringBuilder();
+        for (final var level : levels)
+            for (final var artifactId : level)
+                managed.append(dependency(artifactId, "${bom.version}"));
+
+        return """
+                <project>
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                  <packaging>pom</packaging>
+                  <properties>
+                    <bom.version>%s</bom.version>
+                  </properties>
+                  <dependencyManagement>
+                    <dependencies>
+                %s    </dependencies>
+                  </dependencyManagement>
+                </project>
+                """.formatted(GROUP_ID, BOM, VERSION, VERSION, managed);
+    }
+
+    @Nonnull
+    private static String artifactPom(
+            @Nonnull final String artifactId,
+            @Nonnull final Collection<String> dependencies,
+            final boolean managed) {
+
+        final var declared = new StringBuilder();
+        for (final var dependency : dependencies)
+            declared.append(dependency(dependency, managed ? null : "${synthetic.version}"));
+
+        final var management = managed
+                ? """
+                  <dependencyManagement>
+                    <dependencies>
+                      <dependency>
+                        <groupId>%s</groupId>
+                        <artifactId>%s</artifactId>
+                        <version>%s</version>
+                        <type>pom</type>
+                        <scope>import</scope>
+                      </dependency>
+                    </dependencies>
+                  </dependencyManagement>
+                """.formatted(GROUP_ID, BOM, VERSION)
+                : "";
+
+        return """
+                <project>
+                  <modelVersion>4.0.0</modelVersion>
+                  <parent>
+                    <groupId>%s</groupId>
+                    <artifactId>%s</artifactId>
+                    <version>%s</version>
+                  </parent>
+                  <artifactId>%s</artifactId>
+                %s  <dependencies>
+                %s  </dependencies>
+                </project>
+                """.formatted(GROUP_ID, PARENT, VERSION, artifactId, management, declared);
+    }
+
+    @Nonnull
+    private static String dependency(@Nonnull final String artifactId, final String version) {
+        final var versionElement = version != null
+                ? "        <version>%s</version>\n".formatted(version)
+                : "";
+        return """
+                      <dependency>
+                        <groupId>%s</groupId>
+                        <artifactId>%s</artifactId>
+                %s      </dependency>
+                """.formatted(GROUP_ID, artifactId, versionElement);
+    }
+
+    @Nonnull
+    private static File artifactFile(@Nonnull final File directory, @Nonnull final String artifactId, @Nonnull final String extension) {
+        final var prefix = String.format(
+                "%2$s%1$c%3$s%1$c%4$s%1$c%3$s-%4$s",
+                File.separatorChar,
+                GROUP_ID.replace('.', File.separatorChar),
+                artifactId,
+                VERSION);
+        return new File(directory, prefix + '.' + extension);
+    }
+
+    @Nonnull
+    private static File writePom(@Nonnull final File directory, @Nonnull final String artifactId, @Nonnull final String content) throws IOException {
+        final var file = artifactFile(directory, artifactId, "pom");
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static void writeJar(@Nonnull final File directory, @Nonnull final String artifactId, final int entries) throws IOException {
+        final var file = artifactFile(directory, artifactId, "jar");
+        final var name = artifactId.replace('-', '_');
+        try (final var out = new JarOutputStream(new FileOutputStream(file), new Manifest())) {
+            for (int i = 0; i < entries; ++i) {
+                out.putNextEntry(new JarEntry("io/scriptor/synthetic/%s/Class%d.class".formatted(name, i)));
+                out.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+                out.closeEntry();
+            }
+        }
+    }
+
+    private final File mDirectory;
+    private final String mRoot;
+    private final List<File> mPoms;
+
+    private SyntheticRepository(@Nonnull final File directory, @Nonnull final String root, @Nonnull final List<File> poms) {
+        mDirectory = directory;
+        mRoot = root;
+        mPoms = List.copyOf(poms);
+    }
+
+    @Nonnull
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Get the id of the root artifact, the only artifact at level 0.
+     *
+     * @return the root id (groupId:artifactId:version)
+     */
+    @Nonnull
+    public String getRootId() {
+        return GROUP_ID + ':' + mRoot + ':' + VERSION;
+    }
+
+    /**
+     * Get all generated poms, including the parent and the bom.
+     *
+     * @return the pom files
+     */
+    @Nonnull
+    public List<File> getPoms() {
+        return mPoms;
+    }
+}
@@ -1,24 +1,33 @@
 package io.scriptor;
 
 import guru.nidi.graphviz.model.Graph;
+import guru.nidi.graphviz.model.Node;
 import org.apache.maven.model.Dependency;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.logging.Level;
 import java.util.stream.Stream;
 
 import static guru.nidi.graphviz.model.Factory.graph;
 import static guru.nidi.graphviz.model.Factory.node;
 import static io.scriptor.MvnTools.fetchArtifact;
+import static io.scriptor.MvnTools.fetchArtifacts;
 
 /**
  * Representation of a maven artifact
@@ -26,10 +35,12 @@ import static io.scriptor.MvnTools.fetchArtifact;
 public class MvnArtifact implements Iterable<MvnArtifact> {
 
     /**
-     * Cache for previously materialized artifacts, indexed by id
-     * (groupId:artifactId:packaging:version)
+     * Cache for previously materialized artifacts, indexed by coordinate. Each
+     * entry is registered before the artifact gets built, so every coordinate is
+     * materialized exactly once, even if it is requested by multiple threads at the
+     * same time.
      */
-    private static final Map<String, MvnArtifact> artifacts = new HashMap<>();
+    private static final Map<MvnCoordinate, CompletableFuture<MvnArtifact>> artifacts = new ConcurrentHashMap<>();
 
     // Tree chars
     private static final char VERTICAL = '|';
@@ -38,18 +49,82 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
     private static final char HORIZONTAL = '-';
 
     private static final String ID_FORMAT = "%s:%s:%s:%s";
-    private static final String JAR = "jar";
+    static final String JAR = "jar";
     private static final String COMPILE = "compile";
     private static final String FALSE = "false";
 
     /**
      * Get or materialize an artifact by id.
+     * <p>
+     * Version ranges, e.g. "[1.0,2.0)", resolve to the highest matching version
+     * in the local repository. Unlike maven, remote metadata is only fetched if no
+     * local version matches, so a range satisfied by an old local version does
+     * not see newer remote ones. A range that matches nothing is not fetched or
+     * resolved again until the local versions of its artifact change.
      *
      * @param id the artifact id (groupId:artifactId:packaging:version)
      * @return materialized artifact
      */
     @Nonnull
     public static MvnArtifact getArtifact(@Nonnull final String id) {
+        final var coordinates = parseId(id);
+        return getArtifact(coordinates.getCoordinate(), coordinates.packaging());
+    }
+
+    /**
+     * Get or materialize many artifacts at once, sharing all work between them.
+     * The roots are built in parallel on the resolution executor, missing poms
+     * are fetched in common waves, and every artifact reachable from more than
+     * one root is built and expanded only once.
+     *
+     * @param ids the artifact ids (groupId:artifactId[:packaging]:version)
+     * @return the combined graph of all roots
+     */
+    @Nonnull
+    public static MvnGraph getArtifacts(@Nonnull final Collection<String> ids) {
+        final var roots = ids.stream()
+                .map(MvnArtifact::parseId)
+                .distinct()
+                .toList();
+        MvnTools.getLogger().info(() -> "Get %d artifacts".formatted(roots.size()));
+
+        // fetch all missing roots as one wave
+        fetchArtifacts(
+                roots.stream()
+                        .filter(Coordinates::isMissing)
+                        .map(Coordinates::getId)
+                        .toList(),
+                true);
+
+        final Set<MvnArtifact> visited = ConcurrentHashMap.newKeySet();
+        final var executor = MvnTools.getExecutor();
+        final var futures = roots.stream()
+                .map(root -> materialize(root.getCoordinate(), root.packaging(), executor))
+                .toList();
+        final var expansions = futures.stream()
+                .map(future -> future.thenComposeAsync(root -> visited.add(root)
+                        ? expand(root, MvnExclusions.NONE, visited, executor)
+                        : CompletableFuture.completedFuture(null), executor))
+                .toArray(CompletableFuture[]::new);
+        MvnTools.runDeferred();
+        await(CompletableFuture.allOf(expansions));
+
+        return MvnGraph.build(
+                futures.stream()
+                        .map(MvnArtifact::await)
+                        .distinct()
+                        .toList());
+    }
+
+    /**
+     * Parse an artifact id, defaulting to jar packaging if it has only three
+     * parts.
+     *
+     * @param id the artifact id (groupId:artifactId[:packaging]:version)
+     * @return the coordinates
+     */
+    @Nonnull
+    private static Coordinates parseId(@Nonnull final String id) {
         final var params = id.split(":");
         final var groupId = params[0];
         final var artifactId = params[1];
@@ -68,7 +143,7 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
             packaging = JAR;
             version = "RELEASE";
         }
-        return getArtifact(groupId, artifactId, packaging, version);
+        return new Coordinates(groupId, artifactId, packaging, version);
     }
 
     /**
@@ -87,116 +162,371 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
             @Nonnull final String packaging,
             @Nonnull final String version) {
 
-        final var fullId = ID_FORMAT.formatted(groupId, artifactId, packaging, version);
-        MvnTools.getLogger().info(() -> "Get artifact %s".formatted(fullId));
+        return getArtifact(MvnCoordinate.of(groupId, artifactId, version), packaging);
+    }
 
-        final var id = groupId + ':' + artifactId + ':' + version;
-        if (artifacts.containsKey(id))
-            return artifacts.get(id);
+    /**
+     * Get or materialize an artifact by coordinate. Getting an artifact whose
+     * closure was already built does not allocate, unless fine logging is enabled.
+     *
+     * @param coordinate the coordinate
+     * @param packaging  the packaging
+     * @return materialized artifact
+     */
+    @Nonnull
+    public static MvnArtifact getArtifact(@Nonnull final MvnCoordinate coordinate, @Nonnull final String packaging) {
+        final var logger = MvnTools.getLogger();
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("Get artifact %s".formatted(coordinate));
 
-        MvnTools.getLogger().info(() -> "Materializing artifact");
+        final var future = materializeNow(coordinate, packaging);
+        MvnTools.runDeferred();
 
-        final var artifact = new MvnArtifact(groupId, artifactId, packaging, version);
-        artifacts.put(id, artifact);
+        final var artifact = await(future);
+        if (!MvnTools.isLazyResolution() && artifact.mClosureScope != MvnTools.getResolutionScope())
+            artifact.awaitClosure();
         return artifact;
     }
 
     /**
-     * Get a property from a map of strings indexed by strings, but only if the key
-     * is in format "${...}".
-     * This also works recursively.
+     * Drop all materialized artifacts. Artifacts handed out before stay usable,
+     * but are no longer shared with later lookups.
+     */
+    static void clearCache() {
+        artifacts.clear();
+        MvnDependents.clear();
+    }
+
+    /**
+     * Drop all artifacts derived from the given files, plus everything depending
+     * on them, so they are materialized again on their next lookup. All other
+     * artifacts stay cached.
      *
-     * @param properties the properties
-     * @param key        the key
-     * @param fallback   supplier for a fallback value
-     * @return the value of the property or key if it is not a property
+     * @param paths the absolute paths of the changed files
+     * @return the invalidated coordinates
      */
     @Nonnull
-    private static String getProperty(
-            @Nonnull final Map<String, String> properties,
-            @Nonnull String key,
-            @Nonnull final Supplier<String> fallback) {
-        while (key != null && key.startsWith("${") && key.endsWith("}"))
-            key = properties.getOrDefault(key.substring(2, key.length() - 1), null);
-        if (key != null)
-            return key;
-        return fallback.get();
+    static Set<MvnCoordinate> invalidate(@Nonnull final Collection<String> paths) {
+        final var affected = MvnDependents.collect(paths);
+        for (final var coordinate : affected) {
+            artifacts.remove(coordinate);
+            if (MvnTools.isVersionRange(coordinate.getVersion()))
+                MvnVersionResolver.forget(coordinate);
+        }
+        return affected;
+    }
+
+    /**
+     * Check if an artifact is still the one cached for its coordinate.
+     *
+     * @param artifact the artifact
+     * @return false if it was invalidated since
+     */
+    static boolean isCurrent(@Nonnull final MvnArtifact artifact) {
+        final var future = artifacts.get(artifact.mCoordinate);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() && future.join() == artifact;
+    }
+
+    /**
+     * Get or start materializing an artifact. The artifact itself is built using
+     * the given executor, its parent, imports and dependencies are only resolved
+     * once they are accessed or a walk reaches it.
+     *
+     * @param coordinate the coordinate
+     * @param packaging  the packaging
+     * @param executor   the executor to build the artifact on
+     * @return future completing once the artifact is built
+     */
+    @Nonnull
+    private static CompletableFuture<MvnArtifact> materialize(
+            @Nonnull final MvnCoordinate coordinate,
+            @Nonnull final String packaging,
+            @Nonnull final Executor executor) {
+
+        final var existing = artifacts.get(coordinate);
+        if (existing != null) {
+            MvnStatistics.artifactLookup(true);
+            MvnEvents.cacheLookup("artifact", coordinate, true);
+            return existing;
+        }
+
+        final var future = new Pending(coordinate, packaging);
+        final var present = artifacts.putIfAbsent(coordinate, future);
+        MvnStatistics.artifactLookup(present != null);
+        MvnEvents.cacheLookup("artifact", coordinate, present != null);
+        if (present != null)
+            return present;
+
+        MvnTools.getLogger().info(() -> "Materializing artifact %s".formatted(coordinate));
+
+        executor.execute(future);
+        return future;
     }
 
     /**
-     * Get a property from a map of strings indexed by strings, but only if the key
-     * is in format "${...}".
-     * This also works recursively.
+     * Get or materialize an artifact on the calling thread. If the artifact was
+     * scheduled on the resolution executor before, but not built yet, it is built
+     * right away instead of waiting for the executor to get to it.
      *
-     * @param properties the properties
-     * @param key        the key
-     * @return the value of the property or key if it is not a property
+     * @param coordinate the coordinate
+     * @param packaging  the packaging
+     * @return future completing once the artifact is built
      */
     @Nonnull
-    private static String getProperty(
-            @Nonnull final Map<String, String> properties,
-            @Nonnull String key) {
-        return getProperty(properties, key, () -> "");
+    private static CompletableFuture<MvnArtifact> materializeNow(
+            @Nonnull final MvnCoordinate coordinate,
+            @Nonnull final String packaging) {
+        final var future = materialize(coordinate, packaging, Runnable::run);
+        if (future instanceof Pending pending)
+            pending.run();
+        return future;
+    }
+
+    /**
+     * A scheduled build of an artifact. The build runs once, on whichever thread
+     * gets to it first, so a thread requiring the artifact never waits on a task
+     * queued behind itself. Building never waits on other artifacts being built.
+     */
+    private static final class Pending extends CompletableFuture<MvnArtifact> implements Runnable {
+
+        private final MvnCoordinate mCoordinate;
+        private final String mPackaging;
+        private final AtomicBoolean mClaimed = new AtomicBoolean();
+
+        private Pending(@Nonnull final MvnCoordinate coordinate, @Nonnull final String packaging) {
+            mCoordinate = coordinate;
+            mPackaging = packaging;
+        }
+
+        @Override
+        public void run() {
+            if (!mClaimed.compareAndSet(false, true))
+                return;
+
+            try {
+                // a range resolves to the artifact of the version it selects, so every
+                // version is materialized once, no matter how many ranges select it
+                if (MvnTools.isVersionRange(mCoordinate.getVersion())) {
+                    final var version = MvnVersionResolver.resolve(mCoordinate, mPackaging);
+                    MvnDependents.addFiles(
+                            mCoordinate,
+                            MvnVersionResolver.getStamps(mCoordinate.getGroupId(), mCoordinate.getArtifactId()));
+                    if (version != null) {
+                        final var selected = MvnCoordinate.of(mCoordinate.getGroupId(), mCoordinate.getArtifactId(), version);
+                        MvnDependents.addDependent(selected, mCoordinate);
+                        materializeNow(selected, mPackaging).whenComplete((artifact, e) -> {
+                            if (e == null) {
+                                complete(artifact);
+                                return;
+                            }
+                            artifacts.remove(mCoordinate, this);
+                            completeExceptionally(e);
+                        });
+                        return;
+                    }
+                }
+
+                final var artifact = new MvnArtifact(
+                        mCoordinate.getGroupId(),
+                        mCoordinate.getArtifactId(),
+                        mPackaging,
+                        mCoordinate.getVersion());
+                // a pom may declare other coordinates than the ones it was requested by
+                MvnDependents.addDependent(artifact.mCoordinate, mCoordinate);
+                complete(artifact);
+                MvnStatistics.materialized();
+            } catch (final RuntimeException | Error e) {
+                artifacts.remove(mCoordinate, this);
+                completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Materialize an artifact required to prepare this one, i.e. a parent or
+     * import, without preparing it.
+     *
+     * @param coordinates the coordinates
+     * @return the built artifact
+     */
+    @Nonnull
+    private MvnArtifact require(@Nonnull final Coordinates coordinates) {
+        final var coordinate = coordinates.getCoordinate();
+        MvnDependents.addDependent(coordinate, mCoordinate);
+        return await(materializeNow(coordinate, coordinates.packaging()));
+    }
+
+    /**
+     * Wait for a future to complete, rethrowing the original exception on failure.
+     *
+     * @param future the future
+     * @param <T>    the result type
+     * @return the result
+     */
+    private static <T> T await(@Nonnull final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Coordinates of a dependency, as declared by a pom
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @param packaging  the packaging
+     * @param version    the version, or null if it is not managed
+     */
+    record Coordinates(
+            @Nonnull String groupId,
+            @Nonnull String artifactId,
+            @Nonnull String packaging,
+            @Nullable String version) {
+
+        Coordinates {
+            // coordinates are kept by every node, share their strings
+            groupId = MvnCoordinate.intern(groupId);
+            artifactId = MvnCoordinate.intern(artifactId);
+            packaging = MvnCoordinate.intern(packaging);
+            version = MvnCoordinate.intern(version);
+        }
+
+        @Nonnull
+        MvnCoordinate getCoordinate() {
+            return MvnCoordinate.of(groupId, artifactId, version);
+        }
+
+        @Nonnull
+        String getId() {
+            return ID_FORMAT.formatted(groupId, artifactId, packaging, version);
+        }
+
+        /**
+         * Check if the pom of this dependency is not yet in the local repository.
+         *
+         * @return true if the pom needs to be fetched
+         */
+        boolean isMissing() {
+            if (version == null || MvnTools.isVersionRange(version))
+                return false;
+
+            final var coordinate = MvnCoordinate.find(groupId, artifactId, version);
+            return (coordinate == null || !artifacts.containsKey(coordinate))
+                    && !MvnTools.getPomFile(groupId, artifactId, version).exists();
+        }
+    }
+
+    /**
+     * A dependency edge, as declared by a pom
+     *
+     * @param coordinates the coordinates of the dependency
+     * @param scope       the declared or managed scope
+     * @param optional    if the dependency is optional
+     * @param exclusions  the exclusion patterns (groupId:artifactId, either part
+     *                    may be "*") applying to the subtree of the dependency
+     */
+    record Edge(
+            @Nonnull Coordinates coordinates,
+            @Nonnull String scope,
+            boolean optional,
+            @Nonnull List<String> exclusions) {
+
+        Edge {
+            scope = MvnCoordinate.intern(scope);
+            exclusions = exclusions.stream()
+                    .map(MvnCoordinate::intern)
+                    .toList();
+        }
+
+        /**
+         * Check if this dependency is followed in a resolution scope.
+         *
+         * @param resolution the resolution scope
+         * @return true if it is neither optional nor out of scope
+         */
+        boolean isFollowed(@Nonnull final MvnScope resolution) {
+            return !optional && resolution.includes(scope);
+        }
+    }
+
+    /**
+     * A dependency reached on some path through the graph
+     *
+     * @param artifact   the dependency
+     * @param exclusions the exclusions in effect below it on that path
+     */
+    record Reached(@Nonnull MvnArtifact artifact, @Nonnull MvnExclusions exclusions) {
     }
 
     /**
      * Resolve the dependency
      *
-     * @param props the properties
+     * @param scope the property scope of the declaring artifact
      * @param dep   the dependency model
-     * @return the materialized dependency artifact, or null if optional or not
-     * compile scope
+     * @return the dependency edge, with managed values filled in
      */
     @Nonnull
-    private static Optional<MvnArtifact> resolveDependency(
-            @Nonnull final Map<String, String> props,
+    private static Edge resolveDependency(
+            @Nonnull final MvnPropertyScope scope,
             @Nonnull final Dependency dep) {
-        final var depGroupId = getProperty(
-                props,
-                dep.getGroupId(),
-                () -> "");
-        final var depArtifactId = getProperty(
-                props,
-                dep.getArtifactId(),
-                () -> "");
-        final var id = depGroupId + '$' + depArtifactId;
-        final var depPackaging = getProperty(
-                props,
-                dep.getType(),
-                () -> props.getOrDefault(id + ".packaging", JAR));
-        final var depVersion = getProperty(
-                props,
-                dep.getVersion(),
-                () -> props.get(id + ".version"));
-        final var depScope = getProperty(
-                props,
-                dep.getScope(),
-                () -> props.getOrDefault(id + ".scope", COMPILE));
-        final var depOptional = getProperty(
-                props,
-                dep.getOptional(),
-                () -> props.getOrDefault(id + ".optional", FALSE));
-
-        final var isOptional = Boolean.parseBoolean(depOptional);
-        if (isOptional || !COMPILE.equals(depScope))
-            return Optional.empty();
-
-        return Optional.of(getArtifact(depGroupId, depArtifactId, depPackaging, depVersion));
+        final var depGroupId = Objects.requireNonNullElse(scope.interpolate(dep.getGroupId()), "");
+        final var depArtifactId = Objects.requireNonNullElse(scope.interpolate(dep.getArtifactId()), "");
+        final var managed = Objects.requireNonNullElse(
+                scope.getManaged(depGroupId + ':' + depArtifactId),
+                MvnPropertyScope.UNMANAGED);
+
+        final var depPackaging = Objects.requireNonNullElse(
+                scope.interpolate(dep.getType()),
+                Objects.requireNonNullElse(managed.packaging(), JAR));
+        final var version = scope.interpolate(dep.getVersion());
+        final var depVersion = version != null
+                ? version
+                : managed.version();
+        final var depScope = Objects.requireNonNullElse(
+                scope.interpolate(dep.getScope()),
+                Objects.requireNonNullElse(managed.scope(), COMPILE));
+        final var depOptional = Objects.requireNonNullElse(
+                scope.interpolate(dep.getOptional()),
+                Objects.requireNonNullElse(managed.optional(), FALSE));
+
+        final var exclusions = dep.getExclusions()
+                .stream()
+                .map(exclusion -> Objects.requireNonNullElse(scope.interpolate(exclusion.getGroupId()), "*")
+                        + ':'
+                        + Objects.requireNonNullElse(scope.interpolate(exclusion.getArtifactId()), "*"))
+                .toList();
+
+        return new Edge(
+                new Coordinates(depGroupId, depArtifactId, depPackaging, depVersion),
+                depScope,
+                Boolean.parseBoolean(depOptional),
+                exclusions);
     }
 
     private final boolean mComplete;
-    private final String mGroupId;
-    private final String mArtifactId;
+    private final MvnCoordinate mCoordinate;
     private final String mPackaging;
-    private final String mVersion;
     private final String mPrefix;
     private final File mPom;
-    private final MvnArtifact mParent;
-    private final MvnArtifact[] mDependencies;
-    private final Map<String, String> mProperties = new HashMap<>();
+
+    private volatile MvnNodeCache.Node mNode;
+    private volatile MvnPropertyScope mScope;
+    private MvnArtifact mParent;
+    private CompletableFuture<MvnArtifact>[] mEdges;
+    private boolean mCounted;
+    private BitSet mExcluded;
+    private volatile MvnClasspath mClasspath;
+    private volatile MvnScope mClosureScope;
 
     /**
-     * Materialize a new artifact.
+     * Materialize a new artifact. Only the pom is located and its coordinates
+     * read, the parent and imports are resolved once the artifact is prepared.
      *
      * @param groupId    the groupId
      * @param artifactId the artifactId
@@ -207,36 +537,30 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
             @Nonnull final String groupId,
             @Nonnull final String artifactId,
             @Nonnull final String packaging,
-            @Nonnull String version) {
-
-        if (version.matches("[\\[(][a-zA-Z0-9-_.]*,[a-zA-Z0-9-_.]*[])]")) {
-            if (!fetchArtifact(groupId, artifactId, packaging, version, true)) {
-                final var fullId = ID_FORMAT.formatted(groupId, artifactId, packaging, version);
-                MvnTools.getLogger().warning(() -> "Generated incomplete artifact %s".formatted(fullId));
-                mComplete = false;
-                mGroupId = groupId;
-                mArtifactId = artifactId;
-                mPackaging = packaging;
-                mVersion = version;
-                mPrefix = null;
-                mPom = null;
-                mParent = null;
-                mDependencies = new MvnArtifact[0];
-                return;
-            }
-
-            final var artifactRoot = new File(
-                    MvnTools.getRepository(),
-                    groupId.replace('.', File.separatorChar) + File.separatorChar + artifactId);
-
-            final var prefix = Arrays.stream(artifactRoot.listFiles())
-                    .filter(File::isDirectory)
-                    .filter(dir -> !new File(dir, ".lastUpdated").exists())
-                    .map(File::getName)
-                    .max(String::compareTo);
+            @Nonnull final String version) {
 
-            if (prefix.isPresent())
-                version = prefix.get();
+        // ranges are resolved before an artifact gets materialized, so this range did
+        // not match any version
+        if (MvnTools.isVersionRange(version)) {
+            final var fullId = ID_FORMAT.formatted(groupId, artifactId, packaging, version);
+            MvnTools.getLogger().warning(() -> "Generated incomplete artifact %s".formatted(fullId));
+            mComplete = false;
+            mCoordinate = MvnCoordinate.of(groupId, artifactId, version);
+            mPackaging = MvnCoordinate.intern(packaging);
+            mPrefix = null;
+            mPom = null;
+            mNode = new MvnNodeCache.Node(
+                    List.of(),
+                    groupId,
+                    artifactId,
+                    packaging,
+                    version,
+                    null,
+                    Map.of(),
+                    Map.of(),
+                    List.of(),
+                    List.of());
+            return;
         }
 
         // generate a prefix for the artifact for later use
@@ -250,99 +574,468 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
         mPom = new File(MvnTools.getRepository(), mPrefix + ".pom");
 
         // if the pom file does not exist, i.e. the artifact is not yet in the local
-        // repo, then fetch it from the remote
-        if (!mPom.exists() &&
-                (new File(mPom.getPath(), ".lastUpdated").exists() ||
-                        !fetchArtifact(groupId, artifactId, packaging, version, true))) {
+        // repo or it was corrupt, then fetch it from the remote, unless that failed
+        // recently
+        MvnChecksums.dropCorrupt(mPom);
+        if (!mPom.exists() && !fetchArtifact(groupId, artifactId, packaging, version, true)) {
             final var fullId = ID_FORMAT.formatted(groupId, artifactId, packaging, version);
             MvnTools.getLogger().warning(() -> "Generated incomplete artifact %s".formatted(fullId));
             mComplete = false;
-            mGroupId = groupId;
-            mArtifactId = artifactId;
-            mPackaging = packaging;
-            mVersion = version;
-            mParent = null;
-            mDependencies = new MvnArtifact[0];
+            mCoordinate = MvnCoordinate.of(groupId, artifactId, version);
+            mPackaging = MvnCoordinate.intern(packaging);
+            mNode = new MvnNodeCache.Node(
+                    List.of(MvnNodeCache.Stamp.of(mPom)),
+                    groupId,
+                    artifactId,
+                    packaging,
+                    version,
+                    null,
+                    Map.of(),
+                    Map.of(),
+                    List.of(),
+                    List.of());
+            MvnDependents.addFiles(mCoordinate, mNode.stamps());
             return;
         }
 
         mComplete = true;
 
-        // parse the pom file
+        // load the artifact from the graph cache, or parse the pom file if the cached
+        // node is missing or stale
+        final var node = MvnNodeCache.load(mPrefix);
+        if (node != null) {
+            mNode = node;
+            mCoordinate = MvnCoordinate.of(node.groupId(), node.artifactId(), node.version());
+            mPackaging = node.packaging();
+            MvnDependents.addFiles(mCoordinate, node.stamps());
+        } else {
+            final var model = MvnTools.getModel(mPom);
+            final var modelParent = model.getParent();
+
+            // set packaging (this must be provided by the model)
+            mPackaging = MvnCoordinate.intern(model.getPackaging());
+
+            // check for inherited group id and version
+            final var subGroupId = modelParent != null
+                    ? modelParent.getGroupId()
+                    : null;
+            final var subVersion = modelParent != null
+                    ? modelParent.getVersion()
+                    : null;
+            mCoordinate = MvnCoordinate.of(
+                    model.getGroupId() != null
+                            ? model.getGroupId()
+                            : subGroupId,
+                    model.getArtifactId(),
+                    model.getVersion() != null
+                            ? model.getVersion()
+                            : subVersion);
+        }
+
+        // everything else is resolved once the artifact is prepared, which happens
+        // on first access or when a walk reaches it. dependencies are never
+        // scheduled here, as only a walk from the root knows which exclusions are in
+        // effect
+    }
+
+    /**
+     * Get the node of this artifact, preparing the artifact if the node was not
+     * loaded from the graph cache.
+     *
+     * @return the node
+     */
+    @Nonnull
+    private MvnNodeCache.Node getNode() {
+        final var node = mNode;
+        if (node != null)
+            return node;
+
+        prepare();
+        return mNode;
+    }
+
+    /**
+     * Get the property scope of this artifact, chaining the scopes of its parent
+     * and imports.
+     *
+     * @return the property scope
+     */
+    @Nonnull
+    private MvnPropertyScope getScope() {
+        final var scope = mScope;
+        if (scope != null)
+            return scope;
+
+        prepare();
+        return mScope;
+    }
+
+    /**
+     * Prepare this artifact, i.e. build its node, property scope and parent, after
+     * preparing all artifacts required for that. Parents and imports are prepared
+     * from an explicit stack instead of recursively, so arbitrarily long parent
+     * and import chains need constant stack depth. No lock is held while another
+     * artifact is prepared, so an artifact requiring itself is reported, instead
+     * of waiting on itself, even if the cycle is entered by multiple threads.
+     *
+     * @throws IllegalStateException if the parents and imports form a cycle
+     */
+    private void prepare() {
+        final List<MvnArtifact> stack = new ArrayList<>();
+        final Set<MvnArtifact> pending = new HashSet<>();
+        stack.add(this);
+        pending.add(this);
+
+        while (!stack.isEmpty()) {
+            final var artifact = stack.get(stack.size() - 1);
+            final var required = artifact.advance();
+            if (required == null) {
+                pending.remove(stack.remove(stack.size() - 1));
+                continue;
+            }
+
+            if (!pending.add(required)) {
+                final var cycle = new StringJoiner(" -> ");
+                stack.subList(stack.indexOf(required), stack.size()).forEach(member -> cycle.add(member.getId()));
+                cycle.add(required.getId());
+                throw new IllegalStateException("Cyclic parent or import: " + cycle);
+            }
+            stack.add(required);
+        }
+    }
+
+    /**
+     * Advance preparing this artifact by one step, without waiting on any other
+     * artifact to be prepared.
+     *
+     * @return an artifact required by this one that is not prepared yet, or null
+     * once this artifact is prepared
+     */
+    @Nullable
+    private synchronized MvnArtifact advance() {
+        if (mScope != null)
+            return null;
+
+        final var node = mNode;
+        if (node == null)
+            return build();
+
+        MvnArtifact parent = null;
+        if (node.parent() != null) {
+            parent = require(node.parent());
+            if (parent.mScope == null)
+                return parent;
+        }
+
+        final List<MvnPropertyScope> importScopes = new ArrayList<>();
+        for (final var coordinates : node.imports()) {
+            final var imported = require(coordinates);
+            if (imported.mScope == null)
+                return imported;
+            importScopes.add(imported.mScope);
+        }
+
+        mParent = parent;
+        mScope = new MvnPropertyScope(
+                node.properties(),
+                node.management(),
+                parent != null
+                        ? parent.mScope
+                        : null,
+                importScopes);
+        return null;
+    }
+
+    /**
+     * Get the indices of all dependency edges followed in the resolution scope.
+     * The skipped edges are counted once per artifact.
+     *
+     * @return the edge indices, in declaration order
+     */
+    @Nonnull
+    private int[] getFollowedEdges() {
+        final var resolution = MvnTools.getResolutionScope();
+        final var edges = getNode().dependencies();
+
+        final var followed = new int[edges.size()];
+        int count = 0;
+        int optional = 0;
+        for (int i = 0; i < edges.size(); ++i) {
+            final var edge = edges.get(i);
+            if (edge.isFollowed(resolution))
+                followed[count++] = i;
+            else if (edge.optional())
+                ++optional;
+        }
+
+        synchronized (this) {
+            if (!mCounted) {
+                mCounted = true;
+                MvnStatistics.followed(count);
+                MvnStatistics.skippedOptional(optional);
+                MvnStatistics.skippedScope(edges.size() - count - optional);
+            }
+        }
+        return Arrays.copyOf(followed, count);
+    }
+
+    /**
+     * Get the indices of all dependency edges followed on a path with the given
+     * exclusions. Excluded edges are counted once per artifact and edge.
+     *
+     * @param exclusions the exclusions in effect
+     * @return the edge indices, in declaration order
+     */
+    @Nonnull
+    private int[] getFollowedEdges(@Nonnull final MvnExclusions exclusions) {
+        final var followed = getFollowedEdges();
+        if (exclusions == MvnExclusions.NONE)
+            return followed;
+
+        final var edges = getNode().dependencies();
+        int count = 0;
+        for (final var index : followed) {
+            final var coordinates = edges.get(index).coordinates();
+            if (!exclusions.excludes(coordinates.groupId(), coordinates.artifactId())) {
+                followed[count++] = index;
+                continue;
+            }
+
+            synchronized (this) {
+                if (mExcluded == null)
+                    mExcluded = new BitSet(edges.size());
+                if (!mExcluded.get(index)) {
+                    mExcluded.set(index);
+                    MvnStatistics.skippedExclusion();
+                }
+            }
+        }
+        return Arrays.copyOf(followed, count);
+    }
+
+    /**
+     * Get the dependencies at the given edge indices, scheduling the ones not
+     * requested before. Missing poms are fetched as one wave, instead of one at a
+     * time.
+     *
+     * @param indices  the edge indices
+     * @param executor the executor to build new dependencies on
+     * @return futures completing once the dependencies are built, in index order
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private List<CompletableFuture<MvnArtifact>> resolveEdges(@Nonnull final int[] indices, @Nonnull final Executor executor) {
+        final var edges = getNode().dependencies();
+        final List<String> missing;
+        synchronized (this) {
+            if (mEdges == null)
+                mEdges = (CompletableFuture<MvnArtifact>[]) new CompletableFuture<?>[edges.size()];
+
+            missing = Arrays.stream(indices)
+                    .filter(index -> mEdges[index] == null)
+                    .mapToObj(index -> edges.get(index).coordinates())
+                    .filter(Coordinates::isMissing)
+                    .map(Coordinates::getId)
+                    .toList();
+        }
+
+        // fetching may run maven, so it must not block other threads on this artifact
+        fetchArtifacts(missing, true);
+
+        synchronized (this) {
+            final List<CompletableFuture<MvnArtifact>> futures = new ArrayList<>(indices.length);
+            for (final var index : indices) {
+                if (mEdges[index] == null) {
+                    final var dep = edges.get(index).coordinates();
+                    MvnDependents.addDependent(dep.getCoordinate(), mCoordinate);
+                    mEdges[index] = materialize(dep.getCoordinate(), dep.packaging(), executor);
+                }
+                futures.add(mEdges[index]);
+            }
+            return futures;
+        }
+    }
+
+    /**
+     * Get the dependencies followed on a path with the given exclusions, building
+     * them on the calling thread if required. Excluded dependencies are never
+     * materialized.
+     *
+     * @param exclusions the exclusions in effect on the path to this artifact
+     * @return the dependencies, with the exclusions in effect below each of them
+     */
+    @Nonnull
+    Reached[] getDependencies(@Nonnull final MvnExclusions exclusions) {
+        final var indices = getFollowedEdges(exclusions);
+        final var futures = resolveEdges(indices, Runnable::run);
+        MvnTools.runDeferred();
+
+        final var edges = getNode().dependencies();
+        final var reached = new Reached[indices.length];
+        for (int i = 0; i < indices.length; ++i)
+            reached[i] = new Reached(await(futures.get(i)), exclusions.with(edges.get(indices[i]).exclusions()));
+        return reached;
+    }
+
+    /**
+     * Wait until all artifacts reachable from this one, through parents and
+     * followed dependencies, are built. Every artifact schedules its dependencies
+     * on the resolution executor as soon as it is built, pruning the ones excluded
+     * on the path it was first reached on. The closure is built once per
+     * resolution scope, later calls return right away.
+     */
+    private void awaitClosure() {
+        final var scope = MvnTools.getResolutionScope();
+        final Set<MvnArtifact> visited = ConcurrentHashMap.newKeySet();
+        visited.add(this);
+
+        final var executor = MvnTools.getExecutor();
+        final var future = expand(this, MvnExclusions.NONE, visited, executor);
+        MvnTools.runDeferred();
+        await(future);
+        mClosureScope = scope;
+    }
+
+    /**
+     * Resolve the parent and schedule the dependencies of an artifact, then expand
+     * each dependency once it is built.
+     *
+     * @return future completing once the whole subtree is built
+     */
+    @Nonnull
+    private static CompletableFuture<Void> expand(
+            @Nonnull final MvnArtifact artifact,
+            @Nonnull final MvnExclusions exclusions,
+            @Nonnull final Set<MvnArtifact> visited,
+            @Nonnull final Executor executor) {
+
+        artifact.getParent();
+
+        final var indices = artifact.getFollowedEdges(exclusions);
+        final var futures = artifact.resolveEdges(indices, executor);
+        final var edges = artifact.getNode().dependencies();
+
+        final var expansions = new CompletableFuture<?>[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            final var below = exclusions.with(edges.get(indices[i]).exclusions());
+            expansions[i] = futures.get(i).thenComposeAsync(dep -> visited.add(dep)
+                    ? expand(dep, below, visited, executor)
+                    : CompletableFuture.completedFuture(null), executor);
+        }
+        return CompletableFuture.allOf(expansions);
+    }
+
+    /**
+     * Build the node of this artifact from its pom. Only the properties and
+     * managed dependencies declared by the pom itself end up in the node, the
+     * inherited and imported ones are looked up through the property scope. Must
+     * be called while holding the lock of this artifact.
+     *
+     * @return an artifact required to build the node that is not prepared yet, or
+     * null once the node is built and this artifact is prepared
+     */
+    @Nullable
+    private MvnArtifact build() {
+        final Set<MvnNodeCache.Stamp> stamps = new LinkedHashSet<>();
+        stamps.add(MvnNodeCache.Stamp.of(mPom));
+
+        // parse the pom file, usually served from the model cache
         final var model = MvnTools.getModel(mPom);
 
         // preprocess the parent artifact, if exists
         final var modelParent = model.getParent();
+        final Coordinates parent;
+        final MvnArtifact parentArtifact;
+        final MvnPropertyScope parentScope;
         if (modelParent != null) {
-            mParent = getArtifact(modelParent.getId());
-            mProperties.putAll(mParent.mProperties);
+            parent = new Coordinates(
+                    modelParent.getGroupId(),
+                    modelParent.getArtifactId(),
+                    "pom",
+                    modelParent.getVersion());
+            parentArtifact = require(parent);
+            if (parentArtifact.mScope == null)
+                return parentArtifact;
+            stamps.addAll(parentArtifact.mNode.stamps());
+            parentScope = parentArtifact.mScope;
         } else {
-            mParent = null;
+            parent = null;
+            parentArtifact = null;
+            parentScope = null;
         }
 
         // copy the properties from the model into the artifacts properties
-        model.getProperties().forEach((key, value) -> mProperties.put((String) key, (String) value));
-
-        // set artifact id and packaging (those must be provided by the model)
-        mArtifactId = model.getArtifactId();
-        mPackaging = model.getPackaging();
-
-        // check for inherited group id and version
-        final var subGroupId = modelParent != null
-                ? modelParent.getGroupId()
-                : null;
-        mGroupId = model.getGroupId() != null
-                ? model.getGroupId()
-                : subGroupId;
-
-        final var subVersion = modelParent != null
-                ? modelParent.getVersion()
-                : null;
-        mVersion = model.getVersion() != null
-                ? model.getVersion()
-                : subVersion;
+        final Map<String, String> properties = new HashMap<>();
+        model.getProperties().forEach((key, value) -> properties.put((String) key, (String) value));
 
         // define default properties that MUST be provided for the system to work 100%
         // (or at least 99.999%)
-        mProperties.put("project.artifactId", mArtifactId);
-        mProperties.put("project.groupId", mGroupId);
-        mProperties.put("project.version", mVersion);
+        properties.put("project.artifactId", mCoordinate.getArtifactId());
+        properties.put("project.groupId", mCoordinate.getGroupId());
+        properties.put("project.version", mCoordinate.getVersion());
+        if (parent != null) {
+            properties.put("project.parent.groupId", parent.groupId());
+            properties.put("project.parent.version", parent.version());
+        }
 
-        // set versions and other properties from the dependency management part of the
-        // model
+        // collect the managed dependencies and imports from the dependency management
+        // part of the model. their coordinates are interpolated before any imports are
+        // known, the imports must be resolved right away
+        final var declaring = new MvnPropertyScope(properties, Map.of(), parentScope, List.of());
+        final Map<String, MvnPropertyScope.Managed> management = new HashMap<>();
+        final List<Coordinates> imports = new ArrayList<>();
+        final List<MvnPropertyScope> importScopes = new ArrayList<>();
         if (model.getDependencyManagement() != null)
-            model.getDependencyManagement()
-                    .getDependencies()
-                    .forEach(this::resolveDependencyManagement);
+            for (final var dependency : model.getDependencyManagement().getDependencies()) {
+                final var depGroupId = Objects.requireNonNullElse(declaring.interpolate(dependency.getGroupId()), "");
+                final var depArtifactId = Objects.requireNonNullElse(declaring.interpolate(dependency.getArtifactId()), "");
+
+                if (!"import".equals(declaring.interpolate(dependency.getScope()))) {
+                    management.put(depGroupId + ':' + depArtifactId, new MvnPropertyScope.Managed(
+                            dependency.getType(),
+                            dependency.getVersion(),
+                            dependency.getScope(),
+                            dependency.getOptional()));
+                    continue;
+                }
+
+                final var coordinates = new Coordinates(
+                        depGroupId,
+                        depArtifactId,
+                        Objects.requireNonNullElse(declaring.interpolate(dependency.getType()), JAR),
+                        Objects.requireNonNullElse(declaring.interpolate(dependency.getVersion()), ""));
+                final var imported = require(coordinates);
+                if (imported.mScope == null)
+                    return imported;
+                stamps.addAll(imported.mNode.stamps());
+                imports.add(coordinates);
+                importScopes.add(imported.mScope);
+            }
 
-        // retrieve all dependencies
-        mDependencies = model.getDependencies()
+        final var scope = new MvnPropertyScope(properties, management, parentScope, importScopes);
+        final var dependencies = model.getDependencies()
                 .stream()
-                .map(dep -> resolveDependency(mProperties, dep))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .toArray(MvnArtifact[]::new);
-    }
-
-    private void resolveDependencyManagement(@Nonnull final Dependency dependency) {
-        final var depGroupId = getProperty(mProperties, dependency.getGroupId());
-        final var depArtifactId = getProperty(mProperties, dependency.getArtifactId());
-        final var depPackaging = getProperty(mProperties, dependency.getType(), () -> JAR);
-        final var depVersion = getProperty(mProperties, dependency.getVersion());
-        final var depScope = getProperty(mProperties, dependency.getScope(), () -> COMPILE);
-        final var depOptional = getProperty(mProperties, dependency.getOptional(), () -> FALSE);
-
-        if ("import".equals(depScope)) {
-            final var imported = getArtifact(depGroupId, depArtifactId, depPackaging, depVersion);
-            mProperties.putAll(imported.mProperties);
-            return;
-        }
-
-        final var id = depGroupId + '$' + depArtifactId;
-        mProperties.put(id + ".packaging", depPackaging);
-        mProperties.put(id + ".version", depVersion);
-        mProperties.put(id + ".scope", depScope);
-        mProperties.put(id + ".optional", depOptional);
+                .map(dep -> resolveDependency(scope, dep))
+                .toList();
+
+        final var node = new MvnNodeCache.Node(
+                List.copyOf(stamps),
+                mCoordinate.getGroupId(),
+                mCoordinate.getArtifactId(),
+                mPackaging,
+                mCoordinate.getVersion(),
+                parent,
+                properties,
+                management,
+                imports,
+                dependencies);
+        MvnNodeCache.store(mPrefix, node);
+        MvnDependents.addFiles(mCoordinate, node.stamps());
+
+        mNode = node;
+        mParent = parentArtifact;
+        mScope = scope;
+        return null;
     }
 
     @Override
@@ -357,12 +1050,12 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
 
     @Nonnull
     public String getGroupId() {
-        return mGroupId;
+        return mCoordinate.getGroupId();
     }
 
     @Nonnull
     public String getArtifactId() {
-        return mArtifactId;
+        return mCoordinate.getArtifactId();
     }
 
     @Nonnull
@@ -372,13 +1065,18 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
 
     @Nonnull
     public String getVersion() {
-        return mVersion;
+        return mCoordinate.getVersion();
+    }
+
+    @Nonnull
+    public MvnCoordinate getCoordinate() {
+        return mCoordinate;
     }
 
     @Nonnull
     public String getId() {
         // e.g. io.scriptor:mvntools:jar:1.0.0
-        return mGroupId + ':' + mArtifactId + ':' + mPackaging + ':' + mVersion;
+        return mCoordinate.getGroupId() + ':' + mCoordinate.getArtifactId() + ':' + mPackaging + ':' + mCoordinate.getVersion();
     }
 
     @Nullable
@@ -391,42 +1089,233 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
         return mPom;
     }
 
+    /**
+     * Get the file extension of the package, e.g. "jar" for bundles.
+     *
+     * @return the extension
+     */
+    @Nonnull
+    public String getExtension() {
+        return MvnTools.getExtension(mPackaging);
+    }
+
     @Nonnull
     public File getPackageFile() {
-        return new File(MvnTools.getRepository(), mPrefix + '.' + mPackaging);
+        return new File(MvnTools.getRepository(), mPrefix + '.' + getExtension());
     }
 
+    /**
+     * Get the id to fetch the package of this artifact with.
+     *
+     * @return the id, with the extension in place of the packaging
+     */
+    @Nonnull
+    String getPackageId() {
+        return ID_FORMAT.formatted(getGroupId(), getArtifactId(), getExtension(), getVersion());
+    }
+
+    /**
+     * Get the parent artifact, resolving it on first access.
+     *
+     * @return the parent, or null if there is none
+     */
     @Nullable
     public MvnArtifact getParent() {
+        if (mScope == null)
+            prepare();
         return mParent;
     }
 
+    /**
+     * Get the direct dependencies followed in the resolution scope, resolving them
+     * on first access. Exclusions depend on the path an artifact is reached on, so
+     * they are not applied here, but by all methods walking the graph from this
+     * artifact.
+     *
+     * @return the dependencies in declaration order
+     */
     @Nonnull
     public MvnArtifact[] getDependencies() {
-        return mDependencies;
+        final var futures = resolveEdges(getFollowedEdges(), Runnable::run);
+        MvnTools.runDeferred();
+        return futures.stream()
+                .map(MvnArtifact::await)
+                .toArray(MvnArtifact[]::new);
+    }
+
+    /**
+     * Get all artifacts reachable from this one through dependencies, each once.
+     *
+     * @return the dependency closure in breadth first order, starting with this
+     * artifact
+     */
+    @Nonnull
+    public List<MvnArtifact> getClosure() {
+        return List.copyOf(collectGraph(Integer.MAX_VALUE).keySet());
+    }
+
+    /**
+     * Find the dependency cycles reachable from this artifact. The graph is walked
+     * depth first without recursion, and every artifact is expanded once, with the
+     * exclusions of the path it was first reached on. Every dependency leading
+     * back to an artifact on the current path reports one cycle.
+     *
+     * @return the cycles, each starting with the artifact the closing dependency
+     * leads back to, e.g. [a, b] for a -> b -> a
+     */
+    @Nonnull
+    public List<List<MvnArtifact>> getCycles() {
+        final List<List<MvnArtifact>> cycles = new ArrayList<>();
+        final List<MvnArtifact> path = new ArrayList<>();
+        final Map<MvnArtifact, Integer> onPath = new HashMap<>();
+        final Set<MvnArtifact> expanded = new HashSet<>();
+        final Deque<TreeFrame> stack = new ArrayDeque<>();
+
+        path.add(this);
+        onPath.put(this, 0);
+        expanded.add(this);
+        stack.push(new TreeFrame(this, getDependencies(MvnExclusions.NONE), 0));
+
+        while (!stack.isEmpty()) {
+            final var frame = stack.peek();
+            if (frame.mIndex == frame.mDependencies.length) {
+                stack.pop();
+                onPath.remove(path.remove(path.size() - 1));
+                continue;
+            }
+
+            final var reached = frame.mDependencies[frame.mIndex++];
+            final var dep = reached.artifact();
+
+            final var index = onPath.get(dep);
+            if (index != null) {
+                cycles.add(List.copyOf(path.subList(index, path.size())));
+                continue;
+            }
+            if (!expanded.add(dep))
+                continue;
+
+            onPath.put(dep, path.size());
+            path.add(dep);
+            stack.push(new TreeFrame(dep, dep.getDependencies(reached.exclusions()), 0));
+        }
+        return cycles;
+    }
+
+    /**
+     * Get the mediated classpath of this artifact in the current resolution scope,
+     * computing it on first access.
+     *
+     * @return the classpath
+     */
+    @Nonnull
+    public MvnClasspath getClasspath() {
+        final var resolution = MvnTools.getResolutionScope();
+        final var classpath = mClasspath;
+        if (classpath != null && classpath.getScope() == resolution)
+            return classpath;
+
+        synchronized (this) {
+            if (mClasspath == null || mClasspath.getScope() != resolution)
+                mClasspath = MvnClasspath.build(this, resolution);
+            return mClasspath;
+        }
     }
 
     /**
-     * Open the artifacts jar.
+     * Build an index of all classes and resources provided by the dependency
+     * closure of this artifact.
+     *
+     * @return the class index
+     */
+    @Nonnull
+    public MvnClassIndex buildClassIndex() {
+        return MvnClassIndex.build(this);
+    }
+
+    /**
+     * Get bulk access to the packages of the dependency closure of this artifact.
+     *
+     * @return the packages
+     */
+    @Nonnull
+    public MvnPackages getPackages() {
+        return MvnPackages.of(this);
+    }
+
+    /**
+     * Open the artifacts jar. The jar is not pooled and must be closed by the
+     * caller, use {@link #leasePackage()} to share an open jar instead.
      *
      * @return the jar file
      * @throws IOException if any
      */
     @Nonnull
     public JarFile openPackage() throws IOException {
+        final var file = requirePackageFile();
+        final var event = new MvnEvents.JarOpen();
+        event.begin();
+        final var jar = new JarFile(file);
+        event.end();
+        MvnStatistics.jarOpened();
+        if (event.shouldCommit()) {
+            event.file = file.getPath();
+            event.commit();
+        }
+        return jar;
+    }
+
+    /**
+     * Lease the artifacts jar from the shared jar pool.
+     *
+     * @return the lease, which must be closed after use
+     * @throws IOException if any
+     */
+    @Nonnull
+    public MvnJarPool.Lease leasePackage() throws IOException {
+        return MvnTools.getJarPool().acquire(requirePackageFile());
+    }
+
+    /**
+     * Get the package file, fetching it if it is not in the local repository yet.
+     *
+     * @return the package file
+     * @throws IOException if the package is not a jar or could not be fetched
+     */
+    @Nonnull
+    private File requirePackageFile() throws IOException {
         // only jar and war files can be unpacked using the java jar api
-        if (!(mPackaging.equals(JAR) || mPackaging.equals("war")))
+        final var extension = getExtension();
+        if (!(extension.equals(JAR) || extension.equals("war")))
             throw new IOException("'" + mPackaging + "' is not a jar package type");
 
-        // if the jar/war does not exist yet, maybe because maven is lazy, fetch it
+        // if the jar/war does not exist yet, maybe because maven is lazy, or it was
+        // corrupt, fetch it
         final var file = getPackageFile();
+        MvnChecksums.dropCorrupt(file);
         if (!file.exists())
-            fetchArtifact(mGroupId, mArtifactId, mPackaging, mVersion, false);
+            fetchArtifact(getGroupId(), getArtifactId(), extension, getVersion(), false);
 
         if (!file.exists())
             throw new FileNotFoundException(file.toString());
 
-        return new JarFile(file);
+        return file;
+    }
+
+    /**
+     * List all elements in the artifacts package. The jar is only leased while
+     * reading its central directory.
+     *
+     * @return the entries, or an empty list if the package could not be opened
+     */
+    @Nonnull
+    private List<JarEntry> listEntries() {
+        try (final var lease = leasePackage()) {
+            return lease.getJar().stream().toList();
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(e::getMessage);
+            return List.of();
+        }
     }
 
     /**
@@ -436,14 +1325,7 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
      */
     @Nonnull
     public Iterable<JarEntry> entries() {
-        return () -> {
-            try {
-                return openPackage().entries().asIterator();
-            } catch (final IOException e) {
-                MvnTools.getLogger().warning(e::getMessage);
-                return Collections.emptyIterator();
-            }
-        };
+        return () -> listEntries().iterator();
     }
 
     /**
@@ -453,17 +1335,13 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
      */
     @Nonnull
     public Stream<JarEntry> stream() {
-        try {
-            return openPackage().stream();
-        } catch (final IOException e) {
-            MvnTools.getLogger().warning(e::getMessage);
-            return Stream.empty();
-        }
+        return listEntries().stream();
     }
 
     /**
      * Open an input stream from a jar entry. You get one from either using stream()
-     * or entries().
+     * or entries(). The jar stays leased from the shared jar pool until the stream
+     * is closed.
      *
      * @param entry the jar entry
      * @return an input stream to the entry
@@ -471,12 +1349,28 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
      */
     @Nonnull
     public InputStream openEntry(@Nonnull final JarEntry entry) throws IOException {
-        final var pkgFile = getPackageFile();
-        final var name = entry.getName();
-
-        // jar url, e.g. jar:file:/path/to/my/jar/myjar.jar!/my/entry/name
-        final var url = new URL("jar:file:" + pkgFile.getCanonicalPath().replace('\\', '/') + "!/" + name);
-        return url.openStream();
+        final var lease = leasePackage();
+        try {
+            final var jar = lease.getJar();
+            final var jarEntry = jar.getEntry(entry.getName());
+            if (jarEntry == null)
+                throw new FileNotFoundException(entry.getName());
+
+            return new FilterInputStream(jar.getInputStream(jarEntry)) {
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        lease.close();
+                    }
+                }
+            };
+        } catch (final IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
     }
 
     /**
@@ -486,42 +1380,90 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
     @Nonnull
     public String toTree() {
         final var builder = new StringBuilder();
-        builder.append(getId()).append('\n');
-        for (int i = 0; i < mDependencies.length; ++i)
-            mDependencies[i].toTree(builder, 1, new Vector<>(), i == mDependencies.length - 1);
+        try {
+            writeTree(builder, false);
+        } catch (final IOException e) {
+            // a string builder never throws
+            throw new IllegalStateException(e);
+        }
         return builder.toString();
     }
 
     /**
-     * Create a pretty formatted string of the dependency tree, starting from this
-     * artifact.
+     * Write a pretty formatted dependency tree, starting from this artifact. The
+     * graph is walked without recursion, so memory and time stay linear in the
+     * number of lines written. Dependencies that would close a cycle are written,
+     * but not expanded.
      *
-     * @param builder the string builder to put the tree into
-     * @param depth   the depth
-     * @param wasLast a list of all previous depths, if they were the last
-     *                dependency
-     * @param last    if this artifact is the last dependency of the previous
-     */
-    private void toTree(
-            @Nonnull final StringBuilder builder,
-            final int depth,
-            @Nonnull final List<Boolean> wasLast,
-            final boolean last) {
-        for (int i = 1; i < depth; ++i)
-            builder
-                    .append(Boolean.TRUE.equals(wasLast.get(i - 1)) ? ' ' : VERTICAL)
-                    .append("  ");
-        builder
-                .append(last ? UP_RIGHT : T_RIGHT)
-                .append(HORIZONTAL)
-                .append(' ')
-                .append(getId())
-                .append('\n');
-
-        wasLast.add(last);
-        for (int i = 0; i < mDependencies.length; ++i)
-            mDependencies[i].toTree(builder, depth + 1, wasLast, i == mDependencies.length - 1);
-        wasLast.remove(depth - 1);
+     * @param out            the output to stream the tree into
+     * @param omitDuplicates if only the first occurrence of every artifact gets
+     *                       expanded, like maven does
+     * @throws IOException if writing to the output fails
+     */
+    public void writeTree(@Nonnull final Appendable out, final boolean omitDuplicates) throws IOException {
+        out.append(getId()).append('\n');
+
+        // ancestors of the current line, used to detect cycles
+        final Set<MvnArtifact> path = new HashSet<>();
+        final Set<MvnArtifact> expanded = new HashSet<>();
+        final Deque<TreeFrame> stack = new ArrayDeque<>();
+        final var indent = new StringBuilder();
+
+        path.add(this);
+        expanded.add(this);
+        stack.push(new TreeFrame(this, getDependencies(MvnExclusions.NONE), 0));
+
+        while (!stack.isEmpty()) {
+            final var frame = stack.peek();
+            if (frame.mIndex == frame.mDependencies.length) {
+                stack.pop();
+                path.remove(frame.mArtifact);
+                continue;
+            }
+
+            final var reached = frame.mDependencies[frame.mIndex++];
+            final var dep = reached.artifact();
+            final var last = frame.mIndex == frame.mDependencies.length;
+
+            indent.setLength(frame.mIndent);
+            out.append(indent)
+                    .append(last ? UP_RIGHT : T_RIGHT)
+                    .append(HORIZONTAL)
+                    .append(' ');
+
+            if (path.contains(dep)) {
+                out.append('(').append(dep.getId()).append(" - omitted for cycle)\n");
+                continue;
+            }
+            if (!expanded.add(dep) && omitDuplicates) {
+                out.append('(').append(dep.getId()).append(" - omitted for duplicate)\n");
+                continue;
+            }
+
+            out.append(dep.getId()).append('\n');
+
+            indent.append(last ? ' ' : VERTICAL).append("  ");
+            path.add(dep);
+            stack.push(new TreeFrame(dep, dep.getDependencies(reached.exclusions()), indent.length()));
+        }
+    }
+
+    /**
+     * State of an artifact whose dependencies are currently walked by
+     * {@link #writeTree(Appendable, boolean)} or {@link #getCycles()}
+     */
+    private static final class TreeFrame {
+
+        private final MvnArtifact mArtifact;
+        private final Reached[] mDependencies;
+        private final int mIndent;
+        private int mIndex;
+
+        private TreeFrame(@Nonnull final MvnArtifact artifact, @Nonnull final Reached[] dependencies, final int indent) {
+            mArtifact = artifact;
+            mDependencies = dependencies;
+            mIndent = indent;
+        }
     }
 
     /**
@@ -531,30 +1473,140 @@ public class MvnArtifact implements Iterable<MvnArtifact> {
      */
     @Nonnull
     public Graph generateGraph() {
-        return generateGraph(graph().directed());
+        final var nodes = collectGraph(Integer.MAX_VALUE)
+                .entrySet()
+                .stream()
+                .map(entry -> node(entry.getKey().getId()).link(
+                        entry.getValue()
+                                .dependencies()
+                                .stream()
+                                .map(MvnArtifact::getId)
+                                .toArray(String[]::new)))
+                .toArray(Node[]::new);
+        return graph().directed().with(nodes);
     }
 
     /**
-     * Generate a graphviz graph with all dependencies, starting from this artifact.
+     * Write a graph with all dependencies in DOT format, starting from this
+     * artifact. Every artifact and edge is written exactly once.
+     *
+     * @param out            the output to stream the graph into
+     * @param clusterByGroup if artifacts get clustered by their groupId
+     * @param maxDepth       the maximum depth of artifacts to include, with this
+     *                       artifact at depth 0
+     * @return the number of artifacts written
+     * @throws IOException if writing to the output fails
+     */
+    public int writeGraph(
+            @Nonnull final Appendable out,
+            final boolean clusterByGroup,
+            final int maxDepth) throws IOException {
+
+        final var visits = collectGraph(maxDepth);
+
+        out.append("digraph {\n");
+
+        if (clusterByGroup) {
+            final Map<String, List<MvnArtifact>> groups = new LinkedHashMap<>();
+            for (final var artifact : visits.keySet())
+                groups.computeIfAbsent(artifact.getGroupId(), key -> new ArrayList<>()).add(artifact);
+
+            int cluster = 0;
+            for (final var group : groups.entrySet()) {
+                out.append("  subgraph cluster_").append(Integer.toString(cluster++)).append(" {\n");
+                out.append("    label=").append(quote(group.getKey())).append(";\n");
+                for (final var artifact : group.getValue())
+                    out.append("    ").append(quote(artifact.getId())).append(";\n");
+                out.append("  }\n");
+            }
+        } else {
+            for (final var artifact : visits.keySet())
+                out.append("  ").append(quote(artifact.getId())).append(";\n");
+        }
+
+        for (final var entry : visits.entrySet()) {
+            // dependencies of artifacts at the maximum depth are cut off
+            if (entry.getValue().depth() >= maxDepth)
+                continue;
+
+            final var id = quote(entry.getKey().getId());
+            final Set<MvnArtifact> linked = new HashSet<>();
+            for (final var dep : entry.getValue().dependencies())
+                if (linked.add(dep))
+                    out.append("  ").append(id).append(" -> ").append(quote(dep.getId())).append(";\n");
+        }
+
+        out.append("}\n");
+        return visits.size();
+    }
+
+    /**
+     * Write a graph with all dependencies in DOT format into a file, starting from
+     * this artifact.
+     *
+     * @param file           the output file
+     * @param clusterByGroup if artifacts get clustered by their groupId
+     * @param maxDepth       the maximum depth of artifacts to include
+     * @return the number of artifacts written
+     * @throws IOException if any
+     */
+    public int writeGraph(
+            @Nonnull final Path file,
+            final boolean clusterByGroup,
+            final int maxDepth) throws IOException {
+        try (final var writer = Files.newBufferedWriter(file)) {
+            return writeGraph(writer, clusterByGroup, maxDepth);
+        }
+    }
+
+    /**
+     * An artifact visited by {@link #collectGraph(int)}
+     *
+     * @param depth        the depth it was first reached at
+     * @param dependencies the dependencies followed from it, with the exclusions
+     *                     of the path it was first reached on applied
+     */
+    record Visit(int depth, @Nonnull List<MvnArtifact> dependencies) {
+    }
+
+    /**
+     * Collect all artifacts up to a maximum depth in breadth first order. Every
+     * artifact is expanded once, with the exclusions of the path it was first
+     * reached on.
      *
-     * @param graph the graph
-     * @return graph
+     * @param maxDepth the maximum depth
+     * @return the artifacts and their visits
      */
     @Nonnull
-    private Graph generateGraph(Graph graph) {
-        graph = graph.with(
-                node(getId()).link(
-                        Arrays.stream(mDependencies)
-                                .map(MvnArtifact::getId)
-                                .toArray(String[]::new)));
-        for (final var dep : mDependencies)
-            graph = dep.generateGraph(graph);
-        return graph;
+    Map<MvnArtifact, Visit> collectGraph(final int maxDepth) {
+        final Map<MvnArtifact, Visit> visits = new LinkedHashMap<>();
+        final Deque<Reached> queue = new ArrayDeque<>();
+        visits.put(this, new Visit(0, List.of()));
+        queue.add(new Reached(this, MvnExclusions.NONE));
+        while (!queue.isEmpty()) {
+            final var reached = queue.poll();
+            final var artifact = reached.artifact();
+            final var depth = visits.get(artifact).depth();
+            if (depth >= maxDepth)
+                continue;
+
+            final var dependencies = artifact.getDependencies(reached.exclusions());
+            visits.put(artifact, new Visit(depth, Arrays.stream(dependencies).map(Reached::artifact).toList()));
+            for (final var dep : dependencies)
+                if (visits.putIfAbsent(dep.artifact(), new Visit(depth + 1, List.of())) == null)
+                    queue.add(dep);
+        }
+        return visits;
+    }
+
+    @Nonnull
+    private static String quote(@Nonnull final String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
     }
 
     @Override
     @Nonnull
     public Iterator<MvnArtifact> iterator() {
-        return Arrays.stream(mDependencies).iterator();
+        return Arrays.stream(getDependencies()).iterator();
     }
 }
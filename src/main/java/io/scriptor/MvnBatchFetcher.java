@@ -0,0 +1,285 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches artifacts in batches, using a single maven invocation per batch. All
+ * requests arriving while a batch is running are collected and fetched together
+ * in the next one, so a resolution wave costs one process instead of one per
+ * artifact.
+ * <p>
+ * Like a single transitive fetch using dependency:get, a transitive batch is
+ * resolved with dependency:resolve, which downloads the packages of all
+ * transitive dependencies, not just their poms.
+ */
+final class MvnBatchFetcher {
+
+    private static final String POM_HEADER = """
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+                <modelVersion>4.0.0</modelVersion>
+                <groupId>io.scriptor.mvntools</groupId>
+                <artifactId>fetch-batch</artifactId>
+                <version>0</version>
+                <packaging>pom</packaging>
+                <dependencies>
+            """;
+    private static final String POM_FOOTER = """
+                </dependencies>
+            </project>
+            """;
+    private static final String DEPENDENCY = """
+                    <dependency>
+                        <groupId>%s</groupId>
+                        <artifactId>%s</artifactId>
+                        <type>%s</type>
+                        <version>%s</version>
+            %s        </dependency>
+            """;
+    private static final String EXCLUSIONS = """
+                        <exclusions>
+                            <exclusion>
+                                <groupId>*</groupId>
+                                <artifactId>*</artifactId>
+                            </exclusion>
+                        </exclusions>
+            """;
+
+    /**
+     * A pending fetch request
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @param packaging  the packaging
+     * @param version    the version
+     * @param transitive if not only the artifacts pom is required
+     * @param result     completes with true if the artifact was fetched
+     */
+    private record Request(
+            @Nonnull String groupId,
+            @Nonnull String artifactId,
+            @Nonnull String packaging,
+            @Nonnull String version,
+            boolean transitive,
+            @Nonnull CompletableFuture<Boolean> result) {
+
+        @Nonnull
+        String getId() {
+            return groupId + ':' + artifactId + ':' + packaging + ':' + version;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final List<Request> queue = new ArrayList<>();
+    private static boolean running;
+
+    /**
+     * Fetch a list of artifacts, sharing the maven invocation with all concurrent
+     * requests.
+     *
+     * @param ids        the artifact ids (groupId:artifactId:packaging:version)
+     * @param transitive if not only the artifacts poms are required
+     * @return true if all artifacts were fetched
+     */
+    static boolean fetch(@Nonnull final Collection<String> ids, final boolean transitive) {
+        final var requests = new ArrayList<Request>();
+        for (final var id : ids) {
+            final var params = id.split(":");
+            requests.add(new Request(
+                    params[0],
+                    params[1],
+                    params[2],
+                    params[3],
+                    transitive,
+                    new CompletableFuture<>()));
+        }
+
+        final boolean leader;
+        synchronized (lock) {
+            queue.addAll(requests);
+            leader = !running;
+            running = true;
+        }
+
+        // the first thread to find no batch running becomes the leader and keeps
+        // fetching batches until no more requests are queued
+        if (leader)
+            drain();
+
+        var success = true;
+        for (final var request : requests)
+            success &= request.result().join();
+        return success;
+    }
+
+    private static void drain() {
+        while (true) {
+            final List<Request> batch;
+            synchronized (lock) {
+                if (queue.isEmpty()) {
+                    running = false;
+                    return;
+                }
+                batch = new ArrayList<>(queue);
+                queue.clear();
+            }
+
+            try {
+                run(batch);
+            } catch (final RuntimeException e) {
+                MvnTools.getLogger().warning(() -> "Failed to fetch batch: %s".formatted(e));
+            } finally {
+                for (final var request : batch)
+                    request.result().complete(false);
+            }
+        }
+    }
+
+    private static void run(@Nonnull final List<Request> batch) {
+        // merge duplicates, a transitive request covers a non-transitive one
+        final Map<String, Request> unique = new LinkedHashMap<>();
+        for (final var request : batch)
+            unique.merge(request.getId(), request, (a, b) -> a.transitive() ? a : b);
+
+        MvnTools.getLogger().info(() -> "Fetching %d artifacts in one batch".formatted(unique.size()));
+
+        final Set<String> fetched = new HashSet<>();
+        if (MvnTools.getExecutable() != null)
+            fetch(List.copyOf(unique.values()), fetched);
+
+        for (final var request : batch)
+            request.result().complete(fetched.contains(request.getId()) || isPresent(request));
+    }
+
+    /**
+     * Fetch some requests using as few maven invocations as possible. If a batch
+     * fails, e.g. because a single coordinate cannot be resolved, the requests
+     * still missing are retried as one batch, or split in halves if the batch did
+     * not fetch anything. Only a single request is fetched on its own, and
+     * remembered in the negative cache if that fails, too.
+     *
+     * @param requests the requests, each at most once
+     * @param fetched  receives the ids of all requests known to be fetched
+     */
+    private static void fetch(@Nonnull final List<Request> requests, @Nonnull final Set<String> fetched) {
+        if (requests.size() == 1) {
+            final var request = requests.get(0);
+            if (MvnTools.fetchArtifactDirect(
+                    request.groupId(),
+                    request.artifactId(),
+                    request.packaging(),
+                    request.version(),
+                    request.transitive()))
+                fetched.add(request.getId());
+            else
+                MvnNegativeCache.recordFailures(List.of(request.getId()), request.transitive(), false);
+            return;
+        }
+
+        if (invoke(requests) == 0) {
+            for (final var request : requests)
+                fetched.add(request.getId());
+            return;
+        }
+
+        final var missing = requests.stream()
+                .filter(request -> !isPresent(request))
+                .toList();
+        if (missing.isEmpty())
+            return;
+
+        if (missing.size() < requests.size()) {
+            fetch(missing, fetched);
+            return;
+        }
+
+        final var half = missing.size() / 2;
+        fetch(missing.subList(0, half), fetched);
+        fetch(missing.subList(half, missing.size()), fetched);
+    }
+
+    private static boolean isPresent(@Nonnull final Request request) {
+        if (MvnTools.isVersionRange(request.version()))
+            return false;
+
+        final var pom = MvnTools.getPomFile(request.groupId(), request.artifactId(), request.version());
+        if (request.transitive())
+            return pom.exists();
+
+        final var pkg = new File(pom.getParentFile(), "%s-%s.%s".formatted(
+                request.artifactId(),
+                request.version(),
+                MvnTools.getExtension(request.packaging())));
+        return pkg.exists();
+    }
+
+    /**
+     * Run maven on a throwaway pom declaring all requested artifacts as
+     * dependencies.
+     *
+     * @param requests the requests
+     * @return the exit code, or -1 if maven could not be run
+     */
+    private static int invoke(@Nonnull final Collection<Request> requests) {
+        final var exec = MvnTools.getExecutable();
+        if (exec == null)
+            return -1;
+
+        final var builder = new StringBuilder(POM_HEADER);
+        for (final var request : requests)
+            builder.append(DEPENDENCY.formatted(
+                    escape(request.groupId()),
+                    escape(request.artifactId()),
+                    escape(MvnTools.getExtension(request.packaging())),
+                    escape(request.version()),
+                    request.transitive() ? "" : EXCLUSIONS));
+        builder.append(POM_FOOTER);
+
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("mvntools-fetch");
+            Files.writeString(dir.resolve("pom.xml"), builder);
+
+            return new ProcessBuilder(exec, "dependency:resolve")
+                    .inheritIO()
+                    .directory(dir.toFile())
+                    .start()
+                    .waitFor();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(e::getMessage);
+            return -1;
+        } finally {
+            if (dir != null)
+                delete(dir);
+        }
+    }
+
+    private static void delete(@Nonnull final Path dir) {
+        try (final var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(e::getMessage);
+        }
+    }
+
+    @Nonnull
+    private static String escape(@Nonnull final String value) {
+        return value
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;");
+    }
+
+    private MvnBatchFetcher() {
+    }
+}
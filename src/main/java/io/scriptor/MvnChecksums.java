@@ -0,0 +1,349 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verification of poms and packages against the .sha256 or .sha1 checksum files
+ * next to them in the local repository. Files are hashed from memory mapped
+ * windows, and every computed digest is remembered in the cache directory,
+ * keyed by the size and modification time of the file, so unchanged files are
+ * hashed only once, across processes.
+ */
+public final class MvnChecksums {
+
+    /**
+     * The outcome of verifying a file
+     */
+    public enum Status {
+        /**
+         * The file matches its checksum file
+         */
+        VERIFIED,
+        /**
+         * The file does not match its checksum file, e.g. because it is truncated
+         */
+        MISMATCH,
+        /**
+         * There is no checksum file to verify the file against
+         */
+        UNVERIFIED,
+        /**
+         * The file does not exist, or could not be read
+         */
+        MISSING,
+    }
+
+    /**
+     * The result of verifying a file
+     *
+     * @param file     the verified file
+     * @param status   the outcome
+     * @param expected the digest from the checksum file, if any
+     * @param actual   the digest of the file, if it was compared
+     */
+    public record Result(
+            @Nonnull File file,
+            @Nonnull Status status,
+            @Nullable String expected,
+            @Nullable String actual) {
+    }
+
+    private static final String FILE_NAME = "digests.properties";
+
+    // checksum file extensions and their digest algorithms, strongest first
+    private static final String[][] ALGORITHMS = {{"sha256", "SHA-256"}, {"sha1", "SHA-1"}};
+
+    // files below the threshold are read, larger ones are mapped window by window
+    private static final int MAP_THRESHOLD = 64 << 10;
+    private static final long WINDOW = 64L << 20;
+
+    // stamps of the files found to match their checksum files, or to have none
+    private static final Map<File, MvnNodeCache.Stamp> checked = new ConcurrentHashMap<>();
+
+    private static File loadedFrom;
+    private static Map<String, String> digests = new HashMap<>();
+    private static boolean dirty;
+
+    /**
+     * Verify a single file.
+     *
+     * @param file the file
+     * @return the result
+     */
+    @Nonnull
+    public static Result verify(@Nonnull final File file) {
+        return verify(List.of(file)).get(0);
+    }
+
+    /**
+     * Verify the poms of all artifacts in the dependency closure of an artifact,
+     * including their parents, and all packages already in the local repository.
+     * The files are hashed concurrently on the resolution executor.
+     *
+     * @param root the root artifact
+     * @return the results, in breadth first order of the artifacts
+     */
+    @Nonnull
+    public static List<Result> verify(@Nonnull final MvnArtifact root) {
+        final Set<File> files = new LinkedHashSet<>();
+        for (final var artifact : root.getClosure()) {
+            if (!artifact.isComplete())
+                continue;
+
+            for (var parent = artifact; parent != null; parent = parent.getParent())
+                if (parent.getPom() != null)
+                    files.add(parent.getPom());
+
+            final var file = artifact.getPackageFile();
+            if (file.exists())
+                files.add(file);
+        }
+        return verify(files);
+    }
+
+    /**
+     * Drop a file that does not match its checksum file, so it gets fetched
+     * again. Does nothing unless checksum verification is enabled.
+     *
+     * @param file the file
+     */
+    static void dropCorrupt(@Nonnull final File file) {
+        dropCorrupt(List.of(file));
+    }
+
+    /**
+     * Drop all files that do not match their checksum files, so they get fetched
+     * again. Every file is verified once per size and modification time, so
+     * repeated calls for unchanged files only look at their stamps. Does nothing
+     * unless checksum verification is enabled.
+     *
+     * @param files the files
+     */
+    static void dropCorrupt(@Nonnull final Collection<File> files) {
+        if (!MvnTools.isVerifyingChecksums())
+            return;
+
+        final var unchecked = files.stream()
+                .filter(file -> !MvnNodeCache.Stamp.of(file).equals(checked.get(file.getAbsoluteFile())))
+                .toList();
+        if (unchecked.isEmpty())
+            return;
+
+        for (final var result : verify(unchecked)) {
+            final var file = result.file();
+            if (result.status() != Status.MISMATCH) {
+                if (result.status() != Status.MISSING)
+                    checked.put(file, MvnNodeCache.Stamp.of(file));
+                continue;
+            }
+
+            MvnTools.getLogger().warning(() -> "Checksum mismatch for %s: expected %s, got %s, fetching it again"
+                    .formatted(file, result.expected(), result.actual()));
+            MvnTools.getJarPool().invalidate(file);
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (final IOException e) {
+                MvnTools.getLogger().warning(() -> "Failed to delete %s: %s".formatted(file, e));
+            }
+        }
+    }
+
+    /**
+     * Verify some files, concurrently on the resolution executor if there are
+     * multiple ones. A single file is verified on the calling thread, as it may
+     * be a task of the resolution executor itself.
+     */
+    @Nonnull
+    private static List<Result> verify(@Nonnull final Collection<File> files) {
+        if (files.size() == 1) {
+            final var result = check(files.iterator().next());
+            flush();
+            return List.of(result);
+        }
+
+        final var executor = MvnTools.getExecutor();
+        final var futures = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> check(file), executor))
+                .toList();
+        MvnTools.runDeferred();
+
+        final var results = futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+        flush();
+        return results;
+    }
+
+    /**
+     * Verify a file against its strongest checksum file, using the remembered
+     * digest if the file did not change.
+     */
+    @Nonnull
+    private static Result check(@Nonnull File file) {
+        file = file.getAbsoluteFile();
+        if (!file.isFile())
+            return new Result(file, Status.MISSING, null, null);
+
+        for (final var algorithm : ALGORITHMS) {
+            final var checksum = new File(file.getPath() + '.' + algorithm[0]);
+            if (!checksum.isFile())
+                continue;
+
+            final String expected;
+            final String actual;
+            try {
+                // checksum files may contain the file name after the hash
+                expected = Files.readString(checksum.toPath(), StandardCharsets.US_ASCII)
+                        .trim()
+                        .split("\\s+")[0]
+                        .toLowerCase(Locale.ROOT);
+                actual = getDigest(file, algorithm[1]);
+            } catch (final IOException e) {
+                MvnTools.getLogger().warning(() -> "Failed to verify %s: %s".formatted(checksum, e));
+                return new Result(file, Status.MISSING, null, null);
+            }
+
+            return new Result(
+                    file,
+                    expected.equals(actual) ? Status.VERIFIED : Status.MISMATCH,
+                    expected,
+                    actual);
+        }
+        return new Result(file, Status.UNVERIFIED, null, null);
+    }
+
+    /**
+     * Get the digest of a file, computing it if the file changed since it was
+     * last computed.
+     */
+    @Nonnull
+    private static String getDigest(@Nonnull final File file, @Nonnull final String algorithm) throws IOException {
+        final var key = file.getPath();
+        final var prefix = "%d:%d:%s:".formatted(file.length(), file.lastModified(), algorithm);
+
+        synchronized (MvnChecksums.class) {
+            final var entry = load().get(key);
+            if (entry != null && entry.startsWith(prefix))
+                return entry.substring(prefix.length());
+        }
+
+        final var digest = hash(file, algorithm);
+        synchronized (MvnChecksums.class) {
+            load().put(key, prefix + digest);
+            dirty = true;
+        }
+        return digest;
+    }
+
+    @Nonnull
+    private static String hash(@Nonnull final File file, @Nonnull final String algorithm) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        try (final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                final var buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading until the buffer is full
+                }
+                digest.update(buffer.flip());
+            } else {
+                for (long position = 0; position < size; position += WINDOW)
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Load the digests from the cache directory, unless they were already loaded
+     * from there. Must be called while holding the class lock.
+     */
+    @Nonnull
+    private static Map<String, String> load() {
+        final var file = new File(MvnTools.getCacheDirectory(), FILE_NAME);
+        if (file.equals(loadedFrom))
+            return digests;
+
+        digests = read(file);
+        loadedFrom = file;
+        dirty = false;
+        return digests;
+    }
+
+    @Nonnull
+    private static Map<String, String> read(@Nonnull final File file) {
+        final Map<String, String> entries = new HashMap<>();
+        if (!file.exists())
+            return entries;
+
+        final var properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(file.toPath())) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to read %s: %s".formatted(file, e));
+            return entries;
+        }
+
+        for (final var key : properties.stringPropertyNames())
+            entries.put(key, properties.getProperty(key));
+        return entries;
+    }
+
+    /**
+     * Write the digests into the cache directory if any were computed since they
+     * were loaded, merged with the ones other processes wrote in the meantime.
+     */
+    private static synchronized void flush() {
+        if (!dirty)
+            return;
+        dirty = false;
+
+        final var file = loadedFrom;
+        read(file).forEach(digests::putIfAbsent);
+
+        final var properties = new Properties();
+        properties.putAll(digests);
+
+        try {
+            final var dir = file.getParentFile().toPath();
+            Files.createDirectories(dir);
+
+            final var temp = Files.createTempFile(dir, FILE_NAME, ".part");
+            try {
+                try (final OutputStream stream = Files.newOutputStream(temp)) {
+                    properties.store(stream, "verified digests");
+                }
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to write %s: %s".formatted(file, e));
+        }
+    }
+
+    private MvnChecksums() {
+    }
+}
@@ -0,0 +1,309 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Index from class names and resource paths to the artifacts providing them,
+ * across the dependency closure of an artifact. The entry names of every jar
+ * are read straight from its memory mapped central directory, without
+ * inflating anything, and persisted in the cache directory keyed by the jars
+ * size and modification time.
+ */
+public final class MvnClassIndex {
+
+    private static final int MAGIC = 0x4d564e49; // MVNI
+    private static final int FORMAT = 2;
+    private static final String EXTENSION = ".idx";
+
+    private static final int EOCD = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EOCD = 0x06064b50;
+    private static final int CEN = 0x02014b50;
+    private static final int CEN_SIZE = 46;
+    private static final int MAX_COMMENT = 0xffff;
+
+    /**
+     * Build the index for the dependency closure of an artifact. The jars are
+     * read concurrently on the resolution executor.
+     *
+     * @param root the root artifact
+     * @return the index
+     */
+    @Nonnull
+    public static MvnClassIndex build(@Nonnull final MvnArtifact root) {
+        final var artifacts = MvnPackages.fetchJars(root);
+
+        final var executor = MvnTools.getExecutor();
+        final var futures = artifacts.stream()
+                .map(artifact -> CompletableFuture.supplyAsync(() -> readNames(artifact), executor))
+                .toList();
+        MvnTools.runDeferred();
+
+        final Map<String, List<MvnArtifact>> index = new HashMap<>();
+        for (int i = 0; i < artifacts.size(); ++i)
+            for (final var name : futures.get(i).join())
+                index.computeIfAbsent(name, key -> new ArrayList<>(1)).add(artifacts.get(i));
+        return new MvnClassIndex(artifacts, index);
+    }
+
+    /**
+     * Read the entry names of an artifacts jar, using the persisted names if the
+     * jar did not change.
+     *
+     * @param artifact the artifact
+     * @return the entry names, or an empty list if the jar could not be read
+     */
+    @Nonnull
+    static List<String> readNames(@Nonnull final MvnArtifact artifact) {
+        final var file = artifact.getPackageFile();
+        if (!file.exists())
+            return List.of();
+
+        final var size = file.length();
+        final var modified = file.lastModified();
+        final var cached = new File(new File(MvnTools.getCacheDirectory(), "index"), artifact.getPrefix() + EXTENSION);
+
+        final var names = load(cached, size, modified);
+        if (names != null)
+            return names;
+
+        try {
+            final var read = readCentralDirectory(file);
+            store(cached, size, modified, read);
+            return read;
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to index %s: %s".formatted(file, e));
+            return List.of();
+        }
+    }
+
+    /**
+     * Read the names of all file entries from the central directory of a zip file.
+     *
+     * @param file the zip file
+     * @return the entry names
+     * @throws IOException if the file is not a valid zip file
+     */
+    @Nonnull
+    static List<String> readCentralDirectory(@Nonnull final File file) throws IOException {
+        try (final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size < EOCD_SIZE)
+                throw new IOException("not a zip file");
+
+            // the end of central directory record is at the very end, followed only by
+            // an optional comment
+            final var tailSize = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT);
+            final var tailStart = size - tailSize;
+            final var tail = map(channel, tailStart, tailSize);
+
+            int eocd = -1;
+            for (int i = tailSize - EOCD_SIZE; i >= 0; --i)
+                if (tail.getInt(i) == EOCD) {
+                    eocd = i;
+                    break;
+                }
+            if (eocd < 0)
+                throw new IOException("missing end of central directory");
+
+            long count = tail.getShort(eocd + 10) & 0xffff;
+            long length = tail.getInt(eocd + 12) & 0xffffffffL;
+            long offset = tail.getInt(eocd + 16) & 0xffffffffL;
+
+            // zip64 archives store the real values in a separate record
+            final var locator = eocd - 20;
+            if ((count == 0xffff || length == 0xffffffffL || offset == 0xffffffffL)
+                    && locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR) {
+                final var zip64Offset = tail.getLong(locator + 8);
+                if (zip64Offset < 0 || zip64Offset + 56 > size)
+                    throw new IOException("invalid zip64 end of central directory");
+                final var zip64 = map(channel, zip64Offset, 56);
+                if (zip64.getInt(0) != ZIP64_EOCD)
+                    throw new IOException("invalid zip64 end of central directory");
+                count = zip64.getLong(32);
+                length = zip64.getLong(40);
+                offset = zip64.getLong(48);
+            }
+
+            if (offset < 0 || length < 0 || offset + length > size || length > Integer.MAX_VALUE)
+                throw new IOException("invalid central directory");
+
+            final var cen = map(channel, offset, (int) length);
+            final var names = new ArrayList<String>((int) Math.min(count, 1 << 16));
+            int position = 0;
+            for (long i = 0; i < count; ++i) {
+                // a truncated or malformed directory must not read past its end
+                if (position + CEN_SIZE > length || cen.getInt(position) != CEN)
+                    throw new IOException("invalid central directory header");
+
+                final var nameLength = cen.getShort(position + 28) & 0xffff;
+                final var extraLength = cen.getShort(position + 30) & 0xffff;
+                final var commentLength = cen.getShort(position + 32) & 0xffff;
+                if (position + CEN_SIZE + nameLength > length)
+                    throw new IOException("invalid central directory entry");
+
+                final var bytes = new byte[nameLength];
+                cen.get(position + CEN_SIZE, bytes);
+                final var name = new String(bytes, StandardCharsets.UTF_8);
+                if (!name.endsWith("/"))
+                    names.add(name);
+
+                position += CEN_SIZE + nameLength + extraLength + commentLength;
+            }
+            return names;
+        }
+    }
+
+    @Nonnull
+    private static MappedByteBuffer map(
+            @Nonnull final FileChannel channel,
+            final long position,
+            final int size) throws IOException {
+        final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    @Nullable
+    private static List<String> load(@Nonnull final File file, final long size, final long modified) {
+        if (!file.exists())
+            return null;
+
+        try (final var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || in.readLong() != size || in.readLong() != modified)
+                return null;
+
+            final var count = in.readInt();
+            if (count < 0)
+                throw new IOException("invalid entry count " + count);
+
+            final var names = new ArrayList<String>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; ++i) {
+                final var length = in.readInt();
+                if (length < 0 || length > 0xffff)
+                    throw new IOException("invalid name length " + length);
+                final var bytes = new byte[length];
+                in.readFully(bytes);
+                names.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return names;
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to load index %s: %s".formatted(file, e));
+            return null;
+        }
+    }
+
+    private static void store(
+            @Nonnull final File file,
+            final long size,
+            final long modified,
+            @Nonnull final List<String> names) {
+        try {
+            final var dir = file.getParentFile().toPath();
+            Files.createDirectories(dir);
+
+            final var temp = Files.createTempFile(dir, file.getName(), ".part");
+            try {
+                try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    out.writeLong(size);
+                    out.writeLong(modified);
+                    out.writeInt(names.size());
+                    // names are written as plain utf-8, their modified utf-8 form may
+                    // exceed the limit of writeUTF
+                    for (final var name : names) {
+                        final var bytes = name.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                }
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to store index %s: %s".formatted(file, e));
+        }
+    }
+
+    private final List<MvnArtifact> mArtifacts;
+    private final Map<String, List<MvnArtifact>> mIndex;
+
+    private MvnClassIndex(@Nonnull final List<MvnArtifact> artifacts, @Nonnull final Map<String, List<MvnArtifact>> index) {
+        mArtifacts = artifacts;
+        mIndex = index;
+    }
+
+    /**
+     * Get all indexed artifacts, in breadth first order.
+     *
+     * @return the indexed artifacts
+     */
+    @Nonnull
+    public List<MvnArtifact> getArtifacts() {
+        return Collections.unmodifiableList(mArtifacts);
+    }
+
+    /**
+     * Find all artifacts providing a resource.
+     *
+     * @param resource the resource path, e.g. "META-INF/MANIFEST.MF"
+     * @return the providing artifacts, in breadth first order
+     */
+    @Nonnull
+    public List<MvnArtifact> findResource(@Nonnull final String resource) {
+        return Collections.unmodifiableList(mIndex.getOrDefault(resource, List.of()));
+    }
+
+    /**
+     * Find all artifacts providing a class.
+     *
+     * @param className the binary class name, e.g. "java.util.Map$Entry"
+     * @return the providing artifacts, in breadth first order
+     */
+    @Nonnull
+    public List<MvnArtifact> findClass(@Nonnull final String className) {
+        return findResource(className.replace('.', '/') + ".class");
+    }
+
+    /**
+     * Get all classes provided by more than one artifact, excluding module-info.
+     *
+     * @return the duplicate class names and their providing artifacts
+     */
+    @Nonnull
+    public Map<String, List<MvnArtifact>> getDuplicateClasses() {
+        final Map<String, List<MvnArtifact>> duplicates = new TreeMap<>();
+        for (final var entry : mIndex.entrySet()) {
+            final var name = entry.getKey();
+            if (entry.getValue().size() < 2 || !name.endsWith(".class") || name.endsWith("module-info.class"))
+                continue;
+
+            final var className = name.substring(0, name.length() - 6).replace('/', '.');
+            duplicates.put(className, Collections.unmodifiableList(entry.getValue()));
+        }
+        return duplicates;
+    }
+
+    /**
+     * Get the number of distinct resource paths in the index.
+     *
+     * @return the index size
+     */
+    public int size() {
+        return mIndex.size();
+    }
+}
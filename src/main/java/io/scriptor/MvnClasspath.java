@@ -0,0 +1,147 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The mediated classpath of an artifact. Every groupId:artifactId appears at
+ * most once: the version nearest to the root wins, and between versions at the
+ * same depth, the one declared first wins, like maven mediates conflicts.
+ * Dependencies of versions that lost are not followed.
+ */
+public final class MvnClasspath {
+
+    /**
+     * Compute the classpath of an artifact in a single breadth first pass over its
+     * dependency graph. Exclusions apply below the dependency declaring them, so
+     * each selected artifact is expanded with the exclusions of the path it was
+     * selected on. Missing packages are fetched as one wave.
+     *
+     * @param root  the root artifact
+     * @param scope the resolution scope, which must be the current one
+     * @return the classpath
+     */
+    @Nonnull
+    static MvnClasspath build(@Nonnull final MvnArtifact root, @Nonnull final MvnScope scope) {
+        // selected artifacts, indexed by their versionless coordinate
+        final Map<MvnCoordinate, MvnArtifact> selected = new LinkedHashMap<>();
+        final Map<MvnCoordinate, List<MvnArtifact>> omitted = new LinkedHashMap<>();
+        final Deque<MvnArtifact.Reached> queue = new ArrayDeque<>();
+
+        selected.put(versionless(root), root);
+        queue.add(new MvnArtifact.Reached(root, MvnExclusions.NONE));
+        while (!queue.isEmpty()) {
+            final var reached = queue.poll();
+            for (final var next : reached.artifact().getDependencies(reached.exclusions())) {
+                final var dep = next.artifact();
+                final var key = versionless(dep);
+                final var winner = selected.putIfAbsent(key, dep);
+                if (winner == null) {
+                    queue.add(next);
+                    continue;
+                }
+                if (winner == dep)
+                    continue;
+
+                final var losers = omitted.computeIfAbsent(key, k -> new ArrayList<>(1));
+                if (!losers.contains(dep))
+                    losers.add(dep);
+            }
+        }
+
+        final var artifacts = selected.values()
+                .stream()
+                .filter(MvnArtifact::isComplete)
+                .filter(artifact -> !"pom".equals(artifact.getPackaging()))
+                .toList();
+
+        // fetch all missing packages as one wave
+        MvnTools.fetchArtifacts(
+                artifacts.stream()
+                        .filter(artifact -> !artifact.getPackageFile().exists())
+                        .map(MvnArtifact::getPackageId)
+                        .toList(),
+                false);
+
+        return new MvnClasspath(scope, artifacts, omitted);
+    }
+
+    @Nonnull
+    private static MvnCoordinate versionless(@Nonnull final MvnArtifact artifact) {
+        return MvnCoordinate.of(artifact.getGroupId(), artifact.getArtifactId(), null);
+    }
+
+    private final MvnScope mScope;
+    private final List<MvnArtifact> mArtifacts;
+    private final List<File> mFiles;
+    private final Map<MvnCoordinate, List<MvnArtifact>> mOmitted;
+
+    private MvnClasspath(
+            @Nonnull final MvnScope scope,
+            @Nonnull final List<MvnArtifact> artifacts,
+            @Nonnull final Map<MvnCoordinate, List<MvnArtifact>> omitted) {
+        mScope = scope;
+        mArtifacts = artifacts;
+        mFiles = artifacts.stream()
+                .map(MvnArtifact::getPackageFile)
+                .toList();
+        mOmitted = new LinkedHashMap<>();
+        omitted.forEach((key, losers) -> mOmitted.put(key, List.copyOf(losers)));
+    }
+
+    /**
+     * Get the resolution scope this classpath was computed in.
+     *
+     * @return the resolution scope
+     */
+    @Nonnull
+    public MvnScope getScope() {
+        return mScope;
+    }
+
+    /**
+     * Get the selected artifacts, in classpath order.
+     *
+     * @return the artifacts
+     */
+    @Nonnull
+    public List<MvnArtifact> getArtifacts() {
+        return mArtifacts;
+    }
+
+    /**
+     * Get the package files of the selected artifacts, in classpath order.
+     *
+     * @return the package files
+     */
+    @Nonnull
+    public List<File> getFiles() {
+        return mFiles;
+    }
+
+    /**
+     * Get the versions that lost mediation, indexed by the groupId:artifactId
+     * coordinate without a version.
+     *
+     * @return the omitted artifacts
+     */
+    @Nonnull
+    public Map<MvnCoordinate, List<MvnArtifact>> getOmitted() {
+        return Collections.unmodifiableMap(mOmitted);
+    }
+
+    /**
+     * Join the package files into a classpath string.
+     *
+     * @return the package files, separated by the platform path separator
+     */
+    @Override
+    @Nonnull
+    public String toString() {
+        return mFiles.stream()
+                .map(File::getPath)
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+}
@@ -0,0 +1,262 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned groupId:artifactId:version coordinate. There is exactly one instance
+ * per coordinate, so coordinates compare by identity, and every instance gets a
+ * dense int index that can be used to address per-artifact arrays. The
+ * component strings are shared with all other coordinates through a common
+ * string table.
+ * <p>
+ * Looking up an existing coordinate does not allocate: the intern table is
+ * probed with the component strings directly, without building a key first.
+ */
+public final class MvnCoordinate {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    private static final Object lock = new Object();
+
+    /**
+     * Open addressing hash table of all coordinates, kept at most half full. The
+     * table is only ever written while holding the lock and replaced as a whole
+     * when growing, so readers can probe it without locking. A reader racing a
+     * writer at worst misses the new coordinate and retries under the lock.
+     */
+    private static volatile MvnCoordinate[] table = new MvnCoordinate[INITIAL_CAPACITY];
+    private static volatile MvnCoordinate[] indexed = new MvnCoordinate[INITIAL_CAPACITY];
+    private static int count;
+
+    /**
+     * Get the interned coordinate.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @param version    the version
+     * @return the coordinate
+     */
+    @Nonnull
+    public static MvnCoordinate of(
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nullable final String version) {
+
+        final var hash = hash(groupId, artifactId, version);
+        final var found = probe(table, hash, groupId, artifactId, version);
+        if (found != null)
+            return found;
+
+        synchronized (lock) {
+            final var present = probe(table, hash, groupId, artifactId, version);
+            if (present != null)
+                return present;
+
+            final var coordinate = new MvnCoordinate(
+                    intern(groupId),
+                    intern(artifactId),
+                    intern(version),
+                    hash,
+                    count);
+
+            if (count == indexed.length)
+                indexed = Arrays.copyOf(indexed, count * 2);
+            indexed[count++] = coordinate;
+
+            var current = table;
+            if (count * 2 > current.length) {
+                final var grown = new MvnCoordinate[current.length * 2];
+                for (final var entry : current)
+                    if (entry != null)
+                        insert(grown, entry);
+                current = grown;
+            }
+            insert(current, coordinate);
+            table = current;
+            return coordinate;
+        }
+    }
+
+    /**
+     * Find a coordinate without interning it.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @param version    the version
+     * @return the coordinate, or null if it was never interned
+     */
+    @Nullable
+    public static MvnCoordinate find(
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nullable final String version) {
+        final var hash = hash(groupId, artifactId, version);
+        final var found = probe(table, hash, groupId, artifactId, version);
+        if (found != null)
+            return found;
+
+        synchronized (lock) {
+            return probe(table, hash, groupId, artifactId, version);
+        }
+    }
+
+    /**
+     * Get a coordinate by its index.
+     *
+     * @param index the index
+     * @return the coordinate
+     * @throws IndexOutOfBoundsException if no coordinate has this index
+     */
+    @Nonnull
+    public static MvnCoordinate get(final int index) {
+        final var coordinates = indexed;
+        if (index >= 0 && index < coordinates.length && coordinates[index] != null)
+            return coordinates[index];
+
+        // the coordinate may have been added concurrently
+        synchronized (lock) {
+            if (index < 0 || index >= count)
+                throw new IndexOutOfBoundsException(index);
+            return indexed[index];
+        }
+    }
+
+    /**
+     * Get the number of coordinates interned so far. All indices are below it.
+     *
+     * @return the number of coordinates
+     */
+    public static int count() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    /**
+     * Get the shared instance of a coordinate component string.
+     *
+     * @param value the string
+     * @return the shared string, or null if the string is null
+     */
+    static String intern(@Nullable final String value) {
+        if (value == null)
+            return null;
+
+        final var shared = strings.get(value);
+        if (shared != null)
+            return shared;
+
+        final var present = strings.putIfAbsent(value, value);
+        return present != null
+                ? present
+                : value;
+    }
+
+    private static int hash(
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nullable final String version) {
+        final var hash = (groupId.hashCode() * 31 + artifactId.hashCode()) * 31 + Objects.hashCode(version);
+        // spread the high bits, as the table index only uses the low ones
+        return hash ^ (hash >>> 16);
+    }
+
+    @Nullable
+    private static MvnCoordinate probe(
+            @Nonnull final MvnCoordinate[] table,
+            final int hash,
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nullable final String version) {
+        final var mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final var entry = table[i];
+            if (entry == null)
+                return null;
+            if (entry.mHash == hash
+                    && entry.mGroupId.equals(groupId)
+                    && entry.mArtifactId.equals(artifactId)
+                    && Objects.equals(entry.mVersion, version))
+                return entry;
+        }
+    }
+
+    private static void insert(@Nonnull final MvnCoordinate[] table, @Nonnull final MvnCoordinate coordinate) {
+        final var mask = table.length - 1;
+        int i = coordinate.mHash & mask;
+        while (table[i] != null)
+            i = (i + 1) & mask;
+        table[i] = coordinate;
+    }
+
+    private final String mGroupId;
+    private final String mArtifactId;
+    private final String mVersion;
+    private final int mHash;
+    private final int mIndex;
+
+    private MvnCoordinate(
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nullable final String version,
+            final int hash,
+            final int index) {
+        mGroupId = groupId;
+        mArtifactId = artifactId;
+        mVersion = version;
+        mHash = hash;
+        mIndex = index;
+    }
+
+    @Nonnull
+    public String getGroupId() {
+        return mGroupId;
+    }
+
+    @Nonnull
+    public String getArtifactId() {
+        return mArtifactId;
+    }
+
+    @Nullable
+    public String getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Get the dense index of this coordinate, unique for the lifetime of the
+     * process.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        // coordinates are interned
+        return this == obj;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        // e.g. io.scriptor:mvntools:1.0.0, or io.scriptor:mvntools without a version
+        return mVersion != null
+                ? mGroupId + ':' + mArtifactId + ':' + mVersion
+                : mGroupId + ':' + mArtifactId;
+    }
+}
@@ -0,0 +1,145 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index of the materialized graph, used to invalidate the artifacts
+ * whose poms changed together with everything depending on them. Every
+ * artifact is indexed under the files its node was derived from, and under the
+ * artifacts it requires as parent, import or dependency. Artifacts are only
+ * tracked while at least one {@link MvnWatcher} is open.
+ */
+final class MvnDependents {
+
+    /**
+     * A tracked file
+     *
+     * @param stamp       the stamp of the file when it was first tracked
+     * @param coordinates the artifacts derived from the file
+     */
+    private record Tracked(@Nonnull MvnNodeCache.Stamp stamp, @Nonnull Set<MvnCoordinate> coordinates) {
+    }
+
+    private static final Map<String, Tracked> files = new ConcurrentHashMap<>();
+    private static final Map<MvnCoordinate, Set<MvnCoordinate>> dependents = new ConcurrentHashMap<>();
+    private static volatile boolean tracking;
+    private static int watchers;
+
+    /**
+     * Start tracking for a new watcher. The first watcher starts tracking, and as
+     * artifacts materialized before are not tracked, they are dropped from the
+     * cache and materialized again on their next lookup.
+     */
+    static void acquire() {
+        synchronized (MvnDependents.class) {
+            if (watchers++ > 0)
+                return;
+            tracking = true;
+        }
+        MvnArtifact.clearCache();
+    }
+
+    /**
+     * Stop tracking for a closed watcher. Once the last watcher is closed,
+     * tracking stops and everything tracked so far is forgotten.
+     */
+    static void release() {
+        synchronized (MvnDependents.class) {
+            if (--watchers > 0)
+                return;
+            tracking = false;
+            clear();
+        }
+    }
+
+    /**
+     * Check if artifacts are tracked, i.e. if any watcher is open.
+     *
+     * @return true if tracking
+     */
+    static boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Track the files an artifact was derived from.
+     *
+     * @param coordinate the artifact coordinate
+     * @param stamps     the stamps of the files
+     */
+    static void addFiles(@Nonnull final MvnCoordinate coordinate, @Nonnull final List<MvnNodeCache.Stamp> stamps) {
+        if (!tracking)
+            return;
+        for (final var stamp : stamps)
+            files.computeIfAbsent(stamp.path(), path -> new Tracked(stamp, ConcurrentHashMap.newKeySet()))
+                    .coordinates()
+                    .add(coordinate);
+    }
+
+    /**
+     * Track that an artifact requires another one.
+     *
+     * @param dependency the required artifact
+     * @param dependent  the requiring artifact
+     */
+    static void addDependent(@Nonnull final MvnCoordinate dependency, @Nonnull final MvnCoordinate dependent) {
+        if (tracking && dependency != dependent)
+            dependents.computeIfAbsent(dependency, key -> ConcurrentHashMap.newKeySet()).add(dependent);
+    }
+
+    /**
+     * Get all tracked files that changed since they were first tracked.
+     *
+     * @return the paths of the changed files
+     */
+    @Nonnull
+    static Set<String> getChangedFiles() {
+        final Set<String> changed = new LinkedHashSet<>();
+        for (final var tracked : files.values())
+            if (!tracked.stamp().isValid())
+                changed.add(tracked.stamp().path());
+        return changed;
+    }
+
+    /**
+     * Stop tracking the given files, and collect all artifacts derived from them,
+     * plus everything depending on these artifacts.
+     *
+     * @param paths the paths of the changed files
+     * @return the affected coordinates
+     */
+    @Nonnull
+    static Set<MvnCoordinate> collect(@Nonnull final Collection<String> paths) {
+        final Set<MvnCoordinate> affected = new LinkedHashSet<>();
+        final Deque<MvnCoordinate> queue = new ArrayDeque<>();
+        for (final var path : paths) {
+            final var tracked = files.remove(path);
+            if (tracked != null)
+                for (final var coordinate : tracked.coordinates())
+                    if (affected.add(coordinate))
+                        queue.add(coordinate);
+        }
+
+        while (!queue.isEmpty()) {
+            final var requiring = dependents.remove(queue.poll());
+            if (requiring != null)
+                for (final var coordinate : requiring)
+                    if (affected.add(coordinate))
+                        queue.add(coordinate);
+        }
+        return affected;
+    }
+
+    /**
+     * Forget everything tracked so far.
+     */
+    static void clear() {
+        files.clear();
+        dependents.clear();
+    }
+
+    private MvnDependents() {
+    }
+}
@@ -0,0 +1,111 @@
+package io.scriptor;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder events emitted during resolution. Record them using e.g.
+ * {@code -XX:StartFlightRecording}; all events are disabled unless a recording
+ * enables them, in which case emitting them costs next to nothing.
+ */
+final class MvnEvents {
+
+    private static final String CATEGORY = "Maven Tools";
+
+    @Name("io.scriptor.PomParse")
+    @Label("POM Parse")
+    @Description("A pom file was parsed")
+    @Category(CATEGORY)
+    static final class PomParse extends Event {
+
+        @Label("POM")
+        String pom;
+
+        @Label("Fast Parser")
+        @Description("If the streaming parser was used, instead of the full maven parser")
+        boolean fast;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("io.scriptor.PropertyResolution")
+    @Label("Property Resolution")
+    @Description("A property was resolved in a scope for the first time")
+    @Category(CATEGORY)
+    static final class PropertyResolution extends Event {
+
+        @Label("Key")
+        String key;
+
+        @Label("Resolved")
+        boolean resolved;
+    }
+
+    @Name("io.scriptor.Fetch")
+    @Label("Fetch")
+    @Description("Remote artifacts were fetched into the local repository")
+    @Category(CATEGORY)
+    static final class Fetch extends Event {
+
+        @Label("Artifacts")
+        @Description("The requested artifact ids, separated by commas")
+        String ids;
+
+        @Label("Artifact Count")
+        int count;
+
+        @Label("Transitive")
+        boolean transitive;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("io.scriptor.CacheLookup")
+    @Label("Cache Lookup")
+    @Description("An artifact, model or graph node was looked up in a cache")
+    @Category(CATEGORY)
+    static final class CacheLookup extends Event {
+
+        @Label("Cache")
+        String cache;
+
+        @Label("Key")
+        String key;
+
+        @Label("Hit")
+        boolean hit;
+    }
+
+    @Name("io.scriptor.JarOpen")
+    @Label("Jar Open")
+    @Description("A package was opened and its central directory read")
+    @Category(CATEGORY)
+    static final class JarOpen extends Event {
+
+        @Label("File")
+        String file;
+    }
+
+    /**
+     * Emit a cache lookup event, if enabled. The key is only converted to a
+     * string if the event is recorded.
+     *
+     * @param cache the name of the cache
+     * @param key   the key looked up
+     * @param hit   if the lookup was a hit
+     */
+    static void cacheLookup(final String cache, final Object key, final boolean hit) {
+        final var event = new CacheLookup();
+        if (!event.isEnabled())
+            return;
+
+        event.cache = cache;
+        event.key = String.valueOf(key);
+        event.hit = hit;
+        event.commit();
+    }
+
+    private MvnEvents() {
+    }
+}
@@ -0,0 +1,69 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The exclusions in effect on a path through the dependency graph. Every
+ * pattern is a groupId:artifactId, where either part may be the "*" wildcard.
+ * Exclusions accumulate along the path, so an exclusion declared on a
+ * dependency applies to its whole subtree.
+ */
+final class MvnExclusions {
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * The empty set of exclusions, in effect at the root
+     */
+    static final MvnExclusions NONE = new MvnExclusions(new String[0], new String[0]);
+
+    private final String[] mGroupIds;
+    private final String[] mArtifactIds;
+
+    private MvnExclusions(@Nonnull final String[] groupIds, @Nonnull final String[] artifactIds) {
+        mGroupIds = groupIds;
+        mArtifactIds = artifactIds;
+    }
+
+    /**
+     * Check if an artifact is excluded.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @return true if any pattern matches the artifact
+     */
+    boolean excludes(@Nonnull final String groupId, @Nonnull final String artifactId) {
+        for (int i = 0; i < mGroupIds.length; ++i)
+            if ((WILDCARD.equals(mGroupIds[i]) || mGroupIds[i].equals(groupId))
+                    && (WILDCARD.equals(mArtifactIds[i]) || mArtifactIds[i].equals(artifactId)))
+                return true;
+        return false;
+    }
+
+    /**
+     * Add the exclusions declared on a dependency.
+     *
+     * @param patterns the groupId:artifactId patterns
+     * @return the combined exclusions, or this instance if there is nothing to add
+     */
+    @Nonnull
+    MvnExclusions with(@Nonnull final List<String> patterns) {
+        if (patterns.isEmpty())
+            return this;
+
+        final List<String> groupIds = new ArrayList<>(List.of(mGroupIds));
+        final List<String> artifactIds = new ArrayList<>(List.of(mArtifactIds));
+        for (final var pattern : patterns) {
+            final var separator = pattern.indexOf(':');
+            final var groupId = separator < 0 ? pattern : pattern.substring(0, separator);
+            final var artifactId = separator < 0 ? WILDCARD : pattern.substring(separator + 1);
+            if (excludes(groupId, artifactId) && !WILDCARD.equals(groupId) && !WILDCARD.equals(artifactId))
+                continue;
+            groupIds.add(groupId);
+            artifactIds.add(artifactId);
+        }
+        return new MvnExclusions(groupIds.toArray(String[]::new), artifactIds.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,139 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The combined dependency graph of many roots. Every artifact appears once, no
+ * matter how many roots reach it, and records which roots do. Exclusions depend
+ * on the path to an artifact, so every root is walked on its own; the
+ * dependencies of an artifact are the union of the ones followed from any
+ * root.
+ */
+public final class MvnGraph {
+
+    /**
+     * Build the graph of some already resolved roots. The roots are walked in
+     * parallel on the resolution executor.
+     *
+     * @param roots the roots, each at most once
+     * @return the graph
+     */
+    @Nonnull
+    static MvnGraph build(@Nonnull final List<MvnArtifact> roots) {
+        final var executor = MvnTools.getExecutor();
+        final var futures = roots.stream()
+                .map(root -> CompletableFuture.supplyAsync(() -> root.collectGraph(Integer.MAX_VALUE), executor))
+                .toList();
+        MvnTools.runDeferred();
+
+        final Map<MvnArtifact, Set<MvnArtifact>> dependencies = new LinkedHashMap<>();
+        final Map<MvnArtifact, BitSet> reachedBy = new HashMap<>();
+        final List<List<MvnArtifact>> closures = new ArrayList<>(roots.size());
+        for (int i = 0; i < roots.size(); ++i) {
+            final var visits = futures.get(i).join();
+            for (final var entry : visits.entrySet()) {
+                dependencies.computeIfAbsent(entry.getKey(), key -> new LinkedHashSet<>())
+                        .addAll(entry.getValue().dependencies());
+                reachedBy.computeIfAbsent(entry.getKey(), key -> new BitSet(roots.size())).set(i);
+            }
+            closures.add(List.copyOf(visits.keySet()));
+        }
+
+        return new MvnGraph(roots, dependencies, reachedBy, closures);
+    }
+
+    private final List<MvnArtifact> mRoots;
+    private final Map<MvnArtifact, List<MvnArtifact>> mDependencies;
+    private final Map<MvnArtifact, BitSet> mReachedBy;
+    private final Map<MvnArtifact, List<MvnArtifact>> mClosures;
+
+    private MvnGraph(
+            @Nonnull final List<MvnArtifact> roots,
+            @Nonnull final Map<MvnArtifact, Set<MvnArtifact>> dependencies,
+            @Nonnull final Map<MvnArtifact, BitSet> reachedBy,
+            @Nonnull final List<List<MvnArtifact>> closures) {
+        mRoots = List.copyOf(roots);
+        mDependencies = new LinkedHashMap<>();
+        dependencies.forEach((artifact, deps) -> mDependencies.put(artifact, List.copyOf(deps)));
+        mReachedBy = reachedBy;
+        mClosures = new HashMap<>();
+        for (int i = 0; i < roots.size(); ++i)
+            mClosures.put(roots.get(i), closures.get(i));
+    }
+
+    /**
+     * Get the roots, in the order they were requested.
+     *
+     * @return the roots
+     */
+    @Nonnull
+    public List<MvnArtifact> getRoots() {
+        return mRoots;
+    }
+
+    /**
+     * Get all artifacts reachable from any root, each once.
+     *
+     * @return the artifacts, in the order they were first reached
+     */
+    @Nonnull
+    public List<MvnArtifact> getArtifacts() {
+        return List.copyOf(mDependencies.keySet());
+    }
+
+    /**
+     * Get the dependencies of an artifact followed from any root.
+     *
+     * @param artifact the artifact
+     * @return the dependencies, or an empty list if the artifact is not part of
+     * this graph
+     */
+    @Nonnull
+    public List<MvnArtifact> getDependencies(@Nonnull final MvnArtifact artifact) {
+        return mDependencies.getOrDefault(artifact, List.of());
+    }
+
+    /**
+     * Get the view of a single root, i.e. all artifacts reachable from it.
+     *
+     * @param root the root
+     * @return the closure of the root in breadth first order, starting with the
+     * root itself
+     * @throws IllegalArgumentException if the artifact is not a root of this graph
+     */
+    @Nonnull
+    public List<MvnArtifact> getClosure(@Nonnull final MvnArtifact root) {
+        final var closure = mClosures.get(root);
+        if (closure == null)
+            throw new IllegalArgumentException("Not a root: " + root);
+        return closure;
+    }
+
+    /**
+     * Get all roots reaching an artifact.
+     *
+     * @param artifact the artifact
+     * @return the roots, in the order they were requested
+     */
+    @Nonnull
+    public List<MvnArtifact> getRoots(@Nonnull final MvnArtifact artifact) {
+        final var reachedBy = mReachedBy.get(artifact);
+        if (reachedBy == null)
+            return List.of();
+        return reachedBy.stream()
+                .mapToObj(mRoots::get)
+                .toList();
+    }
+
+    /**
+     * Build a compact index of this graph for fast path and dependent queries.
+     *
+     * @return the index
+     */
+    @Nonnull
+    public MvnGraphIndex buildIndex() {
+        return MvnGraphIndex.build(this);
+    }
+}
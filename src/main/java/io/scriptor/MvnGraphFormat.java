@@ -0,0 +1,60 @@
+package io.scriptor;
+
+import guru.nidi.graphviz.engine.Format;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The output formats dependency graphs can be rendered to.
+ */
+public enum MvnGraphFormat {
+
+    /**
+     * Scalable vector graphics
+     */
+    SVG("svg", Format.SVG),
+
+    /**
+     * Raster image
+     */
+    PNG("png", Format.PNG),
+
+    /**
+     * The graph source in DOT format, without any layout
+     */
+    DOT("dot", null),
+
+    /**
+     * The laid out graph as graphviz json, with the positions of all nodes and edges
+     */
+    JSON("json", Format.JSON);
+
+    private final String mType;
+    private final Format mFormat;
+
+    MvnGraphFormat(@Nonnull final String type, @Nullable final Format format) {
+        mType = type;
+        mFormat = format;
+    }
+
+    /**
+     * Get the graphviz output type, which is also the file extension.
+     *
+     * @return the output type, e.g. "svg"
+     */
+    @Nonnull
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * Get the matching format of the bundled graphviz engine.
+     *
+     * @return the format, or null if the graph is not laid out at all
+     */
+    @Nullable
+    Format getFormat() {
+        return mFormat;
+    }
+}
@@ -0,0 +1,439 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Read-only index of a resolved dependency graph, answering questions like
+ * which roots pull in an artifact, and through which paths. Artifacts are
+ * numbered densely, and the edges are kept as compressed adjacency arrays in
+ * both directions, so a query touches nothing but int arrays. The index only
+ * keeps artifact ids, so it can be written to disk and read again without
+ * resolving anything.
+ * <p>
+ * Artifacts are looked up by their full id (groupId:artifactId:packaging:version)
+ * or by groupId:artifactId:version. Unknown artifacts have no dependencies,
+ * dependents or paths.
+ */
+public final class MvnGraphIndex {
+
+    private static final int MAGIC = 0x4d564e47; // MVNG
+    private static final int FORMAT = 1;
+
+    /**
+     * Build the index of the dependency graph of a single root.
+     *
+     * @param root the root artifact
+     * @return the index
+     */
+    @Nonnull
+    public static MvnGraphIndex build(@Nonnull final MvnArtifact root) {
+        return build(MvnGraph.build(List.of(root)));
+    }
+
+    /**
+     * Build the index of a combined dependency graph.
+     *
+     * @param graph the graph
+     * @return the index
+     */
+    @Nonnull
+    public static MvnGraphIndex build(@Nonnull final MvnGraph graph) {
+        final var artifacts = graph.getArtifacts();
+        final Map<MvnArtifact, Integer> nodes = new HashMap<>();
+        for (int i = 0; i < artifacts.size(); ++i)
+            nodes.put(artifacts.get(i), i);
+
+        final var offsets = new int[artifacts.size() + 1];
+        for (int i = 0; i < artifacts.size(); ++i)
+            offsets[i + 1] = offsets[i] + graph.getDependencies(artifacts.get(i)).size();
+
+        final var targets = new int[offsets[artifacts.size()]];
+        for (int i = 0; i < artifacts.size(); ++i) {
+            int edge = offsets[i];
+            for (final var dep : graph.getDependencies(artifacts.get(i)))
+                targets[edge++] = nodes.get(dep);
+        }
+
+        return new MvnGraphIndex(
+                artifacts.stream().map(MvnArtifact::getId).toArray(String[]::new),
+                graph.getRoots().stream().mapToInt(nodes::get).toArray(),
+                offsets,
+                targets);
+    }
+
+    /**
+     * Read an index written by {@link #write(OutputStream)}. Only the bytes of the
+     * index are read, so the stream may continue with other data, and it is not
+     * closed. The stream is read in small pieces, so pass a buffered one.
+     *
+     * @param in the stream to read from
+     * @return the index
+     * @throws IOException if reading fails or the data is not a valid index
+     */
+    @Nonnull
+    public static MvnGraphIndex read(@Nonnull final InputStream in) throws IOException {
+        final var data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT)
+            throw new IOException("not a graph index");
+
+        final var ids = new String[readVarint(data)];
+        for (int i = 0; i < ids.length; ++i)
+            ids[i] = data.readUTF();
+
+        final var roots = new int[readVarint(data)];
+        for (int i = 0; i < roots.length; ++i)
+            roots[i] = readNode(data, ids.length);
+
+        final var offsets = new int[ids.length + 1];
+        for (int i = 0; i < ids.length; ++i)
+            offsets[i + 1] = offsets[i] + readVarint(data);
+
+        final var targets = new int[offsets[ids.length]];
+        for (int i = 0; i < targets.length; ++i)
+            targets[i] = readNode(data, ids.length);
+
+        return new MvnGraphIndex(ids, roots, offsets, targets);
+    }
+
+    private final String[] mIds;
+    private final int[] mRoots;
+    private final boolean[] mRoot;
+    private final Map<String, Integer> mNodes;
+
+    // forward edges of node i are mTargets[mOffsets[i]] to mTargets[mOffsets[i + 1] - 1]
+    private final int[] mOffsets;
+    private final int[] mTargets;
+
+    // reverse edges, in the same layout
+    private final int[] mReverseOffsets;
+    private final int[] mSources;
+
+    private MvnGraphIndex(
+            @Nonnull final String[] ids,
+            @Nonnull final int[] roots,
+            @Nonnull final int[] offsets,
+            @Nonnull final int[] targets) {
+        mIds = ids;
+        mRoots = roots;
+        mOffsets = offsets;
+        mTargets = targets;
+
+        mRoot = new boolean[ids.length];
+        for (final var root : roots)
+            mRoot[root] = true;
+
+        mNodes = new HashMap<>();
+        for (int i = 0; i < ids.length; ++i) {
+            mNodes.put(ids[i], i);
+
+            // groupId:artifactId:packaging:version -> groupId:artifactId:version
+            final var params = ids[i].split(":");
+            if (params.length == 4)
+                mNodes.putIfAbsent(params[0] + ':' + params[1] + ':' + params[3], i);
+        }
+
+        mReverseOffsets = new int[ids.length + 1];
+        for (final var target : targets)
+            ++mReverseOffsets[target + 1];
+        for (int i = 0; i < ids.length; ++i)
+            mReverseOffsets[i + 1] += mReverseOffsets[i];
+
+        mSources = new int[targets.length];
+        final var fill = Arrays.copyOf(mReverseOffsets, ids.length);
+        for (int source = 0; source < ids.length; ++source)
+            for (int edge = offsets[source]; edge < offsets[source + 1]; ++edge)
+                mSources[fill[targets[edge]]++] = source;
+    }
+
+    /**
+     * Get the number of indexed artifacts.
+     *
+     * @return the index size
+     */
+    public int size() {
+        return mIds.length;
+    }
+
+    /**
+     * Get the ids of all indexed artifacts, in the order they were first reached.
+     *
+     * @return the artifact ids
+     */
+    @Nonnull
+    public List<String> getArtifacts() {
+        return List.of(mIds);
+    }
+
+    /**
+     * Get the ids of the roots, in the order they were requested.
+     *
+     * @return the root ids
+     */
+    @Nonnull
+    public List<String> getRoots() {
+        return toIds(mRoots, mRoots.length);
+    }
+
+    /**
+     * Get the dense number of an artifact.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the number, or -1 if the artifact is not indexed
+     */
+    public int indexOf(@Nonnull final String id) {
+        return mNodes.getOrDefault(id, -1);
+    }
+
+    /**
+     * Get the direct dependencies of an artifact.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the dependency ids
+     */
+    @Nonnull
+    public List<String> getDependencies(@Nonnull final String id) {
+        final var node = indexOf(id);
+        if (node < 0)
+            return List.of();
+        return toIds(Arrays.copyOfRange(mTargets, mOffsets[node], mOffsets[node + 1]), mOffsets[node + 1] - mOffsets[node]);
+    }
+
+    /**
+     * Get the artifacts depending on an artifact directly.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the dependent ids
+     */
+    @Nonnull
+    public List<String> getDependents(@Nonnull final String id) {
+        final var node = indexOf(id);
+        if (node < 0)
+            return List.of();
+        return toIds(
+                Arrays.copyOfRange(mSources, mReverseOffsets[node], mReverseOffsets[node + 1]),
+                mReverseOffsets[node + 1] - mReverseOffsets[node]);
+    }
+
+    /**
+     * Get all roots pulling in an artifact, including the artifact itself if it
+     * is a root.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the root ids, in the order they were requested
+     */
+    @Nonnull
+    public List<String> getRoots(@Nonnull final String id) {
+        final var node = indexOf(id);
+        if (node < 0)
+            return List.of();
+
+        final var reached = new boolean[mIds.length];
+        reverseClosure(node, reached, null);
+
+        final List<String> roots = new ArrayList<>();
+        for (final var root : mRoots)
+            if (reached[root])
+                roots.add(mIds[root]);
+        return roots;
+    }
+
+    /**
+     * Count all artifacts depending on an artifact, directly or transitively.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the number of transitive dependents
+     */
+    public int countDependents(@Nonnull final String id) {
+        final var node = indexOf(id);
+        if (node < 0)
+            return 0;
+        return reverseClosure(node, new boolean[mIds.length], null) - 1;
+    }
+
+    /**
+     * Get the shortest path from any root to an artifact.
+     *
+     * @param id the artifact id, with or without packaging
+     * @return the ids along the path, starting with the root and ending with the
+     * artifact, or an empty list if no root reaches it
+     */
+    @Nonnull
+    public List<String> getShortestPath(@Nonnull final String id) {
+        final var node = indexOf(id);
+        if (node < 0)
+            return List.of();
+
+        // walk the reverse edges breadth first, so the first root found is the
+        // nearest one. next points one step closer to the artifact
+        final var next = new int[mIds.length];
+        final var reached = new boolean[mIds.length];
+        final var root = reverseClosure(node, reached, next);
+        if (root < 0)
+            return List.of();
+
+        final List<String> path = new ArrayList<>();
+        for (int current = root; current != node; current = next[current])
+            path.add(mIds[current]);
+        path.add(mIds[node]);
+        return path;
+    }
+
+    /**
+     * Get all paths from any root to an artifact, visiting no artifact twice on
+     * the same path. The number of paths may grow exponentially with the size of
+     * the graph, so at most the given number of paths is returned.
+     *
+     * @param id    the artifact id, with or without packaging
+     * @param limit the maximum number of paths
+     * @return the paths, each starting with a root and ending with the artifact
+     */
+    @Nonnull
+    public List<List<String>> getPaths(@Nonnull final String id, final int limit) {
+        final var node = indexOf(id);
+        if (node < 0 || limit <= 0)
+            return List.of();
+
+        final List<List<String>> paths = new ArrayList<>();
+        final var onPath = new boolean[mIds.length];
+
+        // the current path in reverse, from the artifact towards a root, and the
+        // next reverse edge to follow from each node on it
+        final var path = new int[mIds.length];
+        final var cursor = new int[mIds.length];
+        int depth = 0;
+        path[0] = node;
+        cursor[0] = mReverseOffsets[node];
+        onPath[node] = true;
+        if (mRoot[node])
+            paths.add(toPath(path, 1));
+
+        while (depth >= 0 && paths.size() < limit) {
+            final var current = path[depth];
+            if (cursor[depth] == mReverseOffsets[current + 1]) {
+                onPath[current] = false;
+                --depth;
+                continue;
+            }
+
+            final var source = mSources[cursor[depth]++];
+            if (onPath[source])
+                continue;
+
+            ++depth;
+            path[depth] = source;
+            cursor[depth] = mReverseOffsets[source];
+            onPath[source] = true;
+            if (mRoot[source])
+                paths.add(toPath(path, depth + 1));
+        }
+        return paths;
+    }
+
+    /**
+     * Write the index in a compact binary form: the artifact ids, followed by the
+     * roots and forward edges as variable length integers. The reverse edges are
+     * rebuilt when reading. The stream is flushed, but not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(@Nonnull final OutputStream out) throws IOException {
+        final var data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT);
+
+        writeVarint(data, mIds.length);
+        for (final var id : mIds)
+            data.writeUTF(id);
+
+        writeVarint(data, mRoots.length);
+        for (final var root : mRoots)
+            writeVarint(data, root);
+
+        for (int i = 0; i < mIds.length; ++i)
+            writeVarint(data, mOffsets[i + 1] - mOffsets[i]);
+        for (final var target : mTargets)
+            writeVarint(data, target);
+
+        data.flush();
+    }
+
+    /**
+     * Collect all nodes reaching a node through reverse edges, breadth first.
+     *
+     * @param node    the start node
+     * @param reached marks every reached node
+     * @param next    if not null, receives the node one step closer to the start
+     *                for every reached node, and the walk stops at the first root
+     * @return the number of reached nodes, or if next is given the first root
+     * reached, or -1 if there is none
+     */
+    private int reverseClosure(final int node, @Nonnull final boolean[] reached, final int[] next) {
+        final var queue = new int[mIds.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = node;
+        reached[node] = true;
+
+        while (head < tail) {
+            final var current = queue[head++];
+            if (next != null && mRoot[current])
+                return current;
+
+            for (int edge = mReverseOffsets[current]; edge < mReverseOffsets[current + 1]; ++edge) {
+                final var source = mSources[edge];
+                if (reached[source])
+                    continue;
+                reached[source] = true;
+                if (next != null)
+                    next[source] = current;
+                queue[tail++] = source;
+            }
+        }
+        return next != null ? -1 : tail;
+    }
+
+    @Nonnull
+    private List<String> toIds(@Nonnull final int[] nodes, final int count) {
+        final var ids = new String[count];
+        for (int i = 0; i < count; ++i)
+            ids[i] = mIds[nodes[i]];
+        return List.of(ids);
+    }
+
+    @Nonnull
+    private List<String> toPath(@Nonnull final int[] reversed, final int length) {
+        final var ids = new String[length];
+        for (int i = 0; i < length; ++i)
+            ids[i] = mIds[reversed[length - 1 - i]];
+        return List.of(ids);
+    }
+
+    private static void writeVarint(@Nonnull final DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(@Nonnull final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final var b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static int readNode(@Nonnull final DataInput in, final int count) throws IOException {
+        final var node = readVarint(in);
+        if (node < 0 || node >= count)
+            throw new IOException("invalid node " + node);
+        return node;
+    }
+}
@@ -0,0 +1,266 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transport downloading artifacts straight from a remote repository, without
+ * starting maven. Supports http(s) and file repositories.
+ * <p>
+ * Only the pom is downloaded for transitive fetches, as the dependency graph is
+ * walked by {@link MvnArtifact} itself. Non-transitive fetches also download the
+ * package. Files are verified against their sha1 checksum, if the remote has
+ * one, and moved into the local repository only once they are complete.
+ * Downloads run on threads owned by the transport, which are stopped when it is
+ * closed.
+ */
+public class MvnHttpTransport implements MvnTransport, AutoCloseable {
+
+    /**
+     * The maven central repository
+     */
+    public static final URI CENTRAL = URI.create("https://repo.maven.apache.org/maven2/");
+
+    private final URI mRemote;
+    private final File mLocal;
+    private final HttpClient mClient;
+    private final ExecutorService mExecutor;
+
+    /**
+     * Create a transport downloading from maven central into the default local
+     * repository, with up to 8 concurrent downloads.
+     */
+    public MvnHttpTransport() {
+        this(CENTRAL, null, 8);
+    }
+
+    /**
+     * Create a transport downloading from a remote repository.
+     *
+     * @param remote       the remote repository root
+     * @param local        the local repository, or null for the default one
+     * @param maxDownloads the maximum number of concurrent downloads
+     */
+    public MvnHttpTransport(@Nonnull final URI remote, @Nullable final File local, final int maxDownloads) {
+        if (maxDownloads < 1)
+            throw new IllegalArgumentException("maxDownloads must be at least 1, got " + maxDownloads);
+
+        mRemote = remote.toString().endsWith("/")
+                ? remote
+                : URI.create(remote + "/");
+        mLocal = local;
+        mExecutor = Executors.newFixedThreadPool(maxDownloads, runnable -> {
+            final var thread = new Thread(runnable, "mvntools-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @Nonnull
+    public URI getRemote() {
+        return mRemote;
+    }
+
+    @Nonnull
+    public File getLocal() {
+        return mLocal != null
+                ? mLocal
+                : MvnTools.getRepository();
+    }
+
+    @Override
+    public boolean fetch(@Nonnull final Collection<String> ids, final boolean transitive) {
+        if (mExecutor.isShutdown()) {
+            MvnTools.getLogger().warning(() -> "Transport is closed, not fetching %s".formatted(String.join(", ", ids)));
+            return false;
+        }
+
+        final var downloads = new ArrayList<CompletableFuture<Boolean>>();
+        for (final var id : ids) {
+            final var params = id.split(":");
+            final var groupId = params[0];
+            final var artifactId = params[1];
+            final var packaging = params[2];
+            final var version = params[3];
+
+            if (MvnTools.isVersionRange(version)) {
+                MvnTools.getLogger().warning(() -> "Cannot download version range %s".formatted(id));
+                downloads.add(CompletableFuture.completedFuture(false));
+                continue;
+            }
+
+            // e.g. io/scriptor/mvntools/1.0.0/mvntools-1.0.0
+            final var path = "%s/%2$s/%3$s/%2$s-%3$s".formatted(groupId.replace('.', '/'), artifactId, version);
+            downloads.add(download(path + ".pom"));
+            if (!transitive && !"pom".equals(packaging))
+                downloads.add(download(path + '.' + MvnTools.getExtension(packaging)));
+        }
+
+        var success = true;
+        for (final var download : downloads)
+            success &= download.join();
+        return success;
+    }
+
+    /**
+     * Close the transport. Downloads already started are completed, later fetches
+     * fail.
+     */
+    @Override
+    public void close() {
+        mExecutor.shutdown();
+    }
+
+    @Nonnull
+    private CompletableFuture<Boolean> download(@Nonnull final String path) {
+        final var target = new File(getLocal(), path.replace('/', File.separatorChar)).toPath();
+        if (Files.exists(target))
+            return CompletableFuture.completedFuture(true);
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return transfer(path, target);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (final IOException e) {
+                MvnTools.getLogger().warning(() -> "Failed to download %s: %s".formatted(path, e));
+                return false;
+            }
+        }, mExecutor);
+    }
+
+    /**
+     * Download a file into a temporary file next to the target, verify it and move
+     * it into place.
+     *
+     * @param path   the path relative to the repository root
+     * @param target the target file
+     * @return true if the file was downloaded
+     * @throws IOException          if any
+     * @throws InterruptedException if interrupted while waiting for the remote
+     */
+    private boolean transfer(@Nonnull final String path, @Nonnull final Path target)
+            throws IOException, InterruptedException {
+
+        final String checksum;
+        try (final var stream = open(path + ".sha1")) {
+            checksum = stream != null
+                    ? new String(stream.readAllBytes(), StandardCharsets.US_ASCII).trim()
+                    : null;
+        }
+
+        Files.createDirectories(target.getParent());
+        final var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            try (final var stream = open(path)) {
+                if (stream == null) {
+                    MvnTools.getLogger().warning(() -> "Not found in remote repository: %s".formatted(path));
+                    return false;
+                }
+                Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (checksum != null) {
+                // checksum files may contain the file name after the hash
+                final var expected = checksum.split("\\s+")[0];
+                final var actual = sha1(temp);
+                if (!expected.equalsIgnoreCase(actual)) {
+                    MvnTools.getLogger().warning(() -> "Checksum mismatch for %s: expected %s, got %s"
+                            .formatted(path, expected, actual));
+                    return false;
+                }
+            }
+
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            if (checksum != null)
+                write(target.resolveSibling(target.getFileName() + ".sha1"), checksum);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Open a file from the remote repository.
+     *
+     * @param path the path relative to the repository root
+     * @return the content stream, or null if the file does not exist
+     * @throws IOException          if any
+     * @throws InterruptedException if interrupted while waiting for the remote
+     */
+    @Nullable
+    private InputStream open(@Nonnull final String path) throws IOException, InterruptedException {
+        final var uri = mRemote.resolve(path);
+        if ("file".equals(uri.getScheme())) {
+            final var file = Path.of(uri);
+            return Files.exists(file)
+                    ? Files.newInputStream(file)
+                    : null;
+        }
+
+        final var request = HttpRequest.newBuilder(uri).GET().build();
+        final var response = mClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new IOException("GET %s returned status %d".formatted(uri, response.statusCode()));
+        }
+        return response.body();
+    }
+
+    private static void write(@Nonnull final Path target, @Nonnull final String content) throws IOException {
+        final var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            Files.writeString(temp, content, StandardCharsets.US_ASCII);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Nonnull
+    private static String sha1(@Nonnull final Path file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        try (final var stream = Files.newInputStream(file)) {
+            final var buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) >= 0)
+                digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
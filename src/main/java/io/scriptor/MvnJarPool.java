@@ -0,0 +1,225 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+/**
+ * Bounded pool of open jar files, shared by all package access methods of
+ * {@link MvnArtifact}. Every jar is opened at most once and handed out as
+ * reference counted {@link Lease}s. If the pool grows beyond its capacity, the
+ * least recently used jars without leases are closed.
+ */
+public class MvnJarPool implements AutoCloseable {
+
+    /**
+     * A pooled jar file
+     */
+    private static final class Entry {
+
+        private final File mFile;
+        private final JarFile mJar;
+        private int mLeases;
+        private boolean mRemoved;
+
+        private Entry(@Nonnull final File file, @Nonnull final JarFile jar) {
+            mFile = file;
+            mJar = jar;
+        }
+    }
+
+    /**
+     * A lease on a pooled jar file. The jar must not be closed directly, close the
+     * lease instead to give it back to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Entry mEntry;
+        private boolean mClosed;
+
+        private Lease(@Nonnull final Entry entry) {
+            mEntry = entry;
+        }
+
+        @Nonnull
+        public JarFile getJar() {
+            return mEntry.mJar;
+        }
+
+        @Override
+        public void close() {
+            synchronized (MvnJarPool.this) {
+                if (mClosed)
+                    return;
+                mClosed = true;
+
+                if (--mEntry.mLeases == 0 && mEntry.mRemoved)
+                    closeJar(mEntry);
+                evict();
+            }
+        }
+    }
+
+    private final int mCapacity;
+    private final Map<File, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+    private boolean mClosed;
+
+    /**
+     * Create a new pool.
+     *
+     * @param capacity the maximum number of jars kept open without a lease
+     */
+    public MvnJarPool(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        mCapacity = capacity;
+    }
+
+    /**
+     * Lease a jar file from the pool, opening it if it is not pooled yet.
+     *
+     * @param file the jar file
+     * @return the lease, which must be closed after use
+     * @throws IOException if the jar could not be opened
+     */
+    @Nonnull
+    public Lease acquire(@Nonnull File file) throws IOException {
+        file = file.getAbsoluteFile();
+
+        synchronized (this) {
+            if (mClosed)
+                throw new IOException("jar pool is closed");
+
+            final var entry = mEntries.get(file);
+            if (entry != null) {
+                ++mHits;
+                ++entry.mLeases;
+                return new Lease(entry);
+            }
+            ++mMisses;
+        }
+
+        // open the jar without holding the lock, reading the central directory may
+        // take a while
+        final var event = new MvnEvents.JarOpen();
+        event.begin();
+        final var jar = new JarFile(file);
+        event.end();
+        MvnStatistics.jarOpened();
+        if (event.shouldCommit()) {
+            event.file = file.getPath();
+            event.commit();
+        }
+
+        synchronized (this) {
+            if (mClosed) {
+                jar.close();
+                throw new IOException("jar pool is closed");
+            }
+
+            var entry = mEntries.get(file);
+            if (entry != null) {
+                // someone else opened it in the meantime
+                jar.close();
+            } else {
+                entry = new Entry(file, jar);
+                mEntries.put(file, entry);
+            }
+
+            ++entry.mLeases;
+            evict();
+            return new Lease(entry);
+        }
+    }
+
+    /**
+     * Drop a jar from the pool, e.g. because its file was deleted or replaced.
+     * The jar is closed once its last lease is closed, later leases open the file
+     * again.
+     *
+     * @param file the jar file
+     */
+    public synchronized void invalidate(@Nonnull final File file) {
+        final var entry = mEntries.remove(file.getAbsoluteFile());
+        if (entry == null)
+            return;
+
+        entry.mRemoved = true;
+        if (entry.mLeases == 0)
+            closeJar(entry);
+    }
+
+    /**
+     * Close the least recently used jars without leases, until the pool is within
+     * its capacity again.
+     */
+    private void evict() {
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mEntries.size() > mCapacity && iterator.hasNext()) {
+            final var entry = iterator.next();
+            if (entry.mLeases > 0)
+                continue;
+
+            iterator.remove();
+            entry.mRemoved = true;
+            ++mEvictions;
+            closeJar(entry);
+        }
+    }
+
+    private static void closeJar(@Nonnull final Entry entry) {
+        try {
+            entry.mJar.close();
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to close %s: %s".formatted(entry.mFile, e));
+        }
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Get the number of jars currently open.
+     *
+     * @return the pool size
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    /**
+     * Close the pool. Jars without leases are closed right away, the remaining
+     * ones once their last lease is closed.
+     */
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+        for (final var entry : new ArrayList<>(mEntries.values())) {
+            entry.mRemoved = true;
+            if (entry.mLeases == 0)
+                closeJar(entry);
+        }
+        mEntries.clear();
+    }
+}
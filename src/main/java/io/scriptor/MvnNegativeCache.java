@@ -0,0 +1,218 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Persistent cache of failed fetches. A failure is remembered for the negative
+ * cache ttl, so neither this process nor the next one asks the transport again
+ * for an artifact that could not be fetched a moment ago. Failures are keyed by
+ * the file that was requested, i.e. groupId:artifactId:extension:version, so
+ * requests of the same pom using different packagings share their entry.
+ * <p>
+ * The .lastUpdated files maven leaves next to artifacts it failed to download
+ * count as failures too, dated by their modification time.
+ */
+final class MvnNegativeCache {
+
+    private static final String FILE_NAME = "failures.properties";
+
+    private static File loadedFrom;
+    private static Map<String, Long> failures = new HashMap<>();
+
+    /**
+     * Check if an artifact failed to fetch within the ttl.
+     *
+     * @param id         the artifact id (groupId:artifactId:packaging:version)
+     * @param transitive if the pom was requested, instead of the package
+     * @return true if the artifact should not be fetched again yet
+     */
+    static boolean isFailed(@Nonnull final String id, final boolean transitive) {
+        final var ttl = MvnTools.getNegativeCacheTtl().toMillis();
+        if (ttl <= 0)
+            return false;
+
+        final var now = System.currentTimeMillis();
+        final var key = key(id, transitive);
+
+        final Long failed;
+        synchronized (MvnNegativeCache.class) {
+            failed = load().get(key);
+        }
+        if (failed != null && now - failed < ttl)
+            return true;
+
+        final var file = getFile(key);
+        if (file == null)
+            return false;
+
+        // maven marks failed downloads with a sibling file
+        final var marker = new File(file.getPath() + ".lastUpdated");
+        return !file.exists() && marker.exists() && now - marker.lastModified() < ttl;
+    }
+
+    /**
+     * Remember the artifacts of a fetch that did not end up in the local
+     * repository. A transport only reports if the whole fetch succeeded, so every
+     * requested file is checked on its own. Whether a version range was fetched
+     * cannot be told from the repository, so ranges count as failed if the whole
+     * fetch failed.
+     *
+     * @param ids        the fetched artifact ids
+     *                   (groupId:artifactId:packaging:version)
+     * @param transitive if the poms were requested, instead of the packages
+     * @param success    if the transport reported success
+     */
+    static void recordFailures(@Nonnull final Collection<String> ids, final boolean transitive, final boolean success) {
+        if (MvnTools.getNegativeCacheTtl().toMillis() <= 0)
+            return;
+
+        final List<String> failed = new ArrayList<>();
+        for (final var id : ids) {
+            final var key = key(id, transitive);
+            final var file = getFile(key);
+            if (file != null ? !file.exists() : !success)
+                failed.add(key);
+        }
+        if (failed.isEmpty())
+            return;
+
+        MvnTools.getLogger().info(() -> "Remembering failed fetches of %s".formatted(String.join(", ", failed)));
+
+        final var now = System.currentTimeMillis();
+        synchronized (MvnNegativeCache.class) {
+            final var entries = load();
+            for (final var key : failed)
+                entries.put(key, now);
+            store();
+        }
+    }
+
+    /**
+     * Forget all failures, in memory and on disk.
+     */
+    static synchronized void clear() {
+        failures = new HashMap<>();
+        final var file = new File(MvnTools.getCacheDirectory(), FILE_NAME);
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to delete %s: %s".formatted(file, e));
+        }
+        loadedFrom = file;
+    }
+
+    @Nonnull
+    private static String key(@Nonnull final String id, final boolean transitive) {
+        final var params = id.split(":");
+        if (params.length != 4)
+            return id;
+
+        final var extension = transitive
+                ? "pom"
+                : MvnTools.getExtension(params[2]);
+        return String.join(":", params[0], params[1], extension, params[3]);
+    }
+
+    /**
+     * Get the file a key refers to inside the local repository.
+     *
+     * @return the file, or null if the key is malformed or has a version range
+     */
+    @Nullable
+    private static File getFile(@Nonnull final String key) {
+        final var params = key.split(":");
+        if (params.length != 4 || MvnTools.isVersionRange(params[3]))
+            return null;
+
+        final var prefix = String.format(
+                "%2$s%1$c%3$s%1$c%4$s%1$c%3$s-%4$s",
+                File.separatorChar,
+                params[0].replace('.', File.separatorChar),
+                params[1],
+                params[3]);
+        return new File(MvnTools.getRepository(), prefix + '.' + params[2]);
+    }
+
+    /**
+     * Load the failures from the cache directory, unless they were already
+     * loaded from there. Must be called while holding the class lock.
+     */
+    @Nonnull
+    private static Map<String, Long> load() {
+        final var file = new File(MvnTools.getCacheDirectory(), FILE_NAME);
+        if (file.equals(loadedFrom))
+            return failures;
+
+        failures = read(file);
+        loadedFrom = file;
+        return failures;
+    }
+
+    @Nonnull
+    private static Map<String, Long> read(@Nonnull final File file) {
+        final Map<String, Long> entries = new HashMap<>();
+        if (!file.exists())
+            return entries;
+
+        final var properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(file.toPath())) {
+            properties.load(stream);
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to read %s: %s".formatted(file, e));
+            return entries;
+        }
+
+        for (final var key : properties.stringPropertyNames())
+            try {
+                entries.put(key, Long.parseLong(properties.getProperty(key)));
+            } catch (final NumberFormatException ignored) {
+                // skip corrupted entries
+            }
+        return entries;
+    }
+
+    /**
+     * Write the failures into the cache directory, merged with the ones other
+     * processes wrote in the meantime. Must be called while holding the class
+     * lock.
+     */
+    private static void store() {
+        final var file = loadedFrom;
+        final var ttl = MvnTools.getNegativeCacheTtl().toMillis();
+        final var now = System.currentTimeMillis();
+
+        read(file).forEach((key, failed) -> failures.merge(key, failed, Math::max));
+        failures.values().removeIf(failed -> now - failed >= ttl);
+
+        final var properties = new Properties();
+        failures.forEach((key, failed) -> properties.setProperty(key, Long.toString(failed)));
+
+        try {
+            final var dir = file.getParentFile().toPath();
+            Files.createDirectories(dir);
+
+            final var temp = Files.createTempFile(dir, FILE_NAME, ".part");
+            try {
+                try (final OutputStream stream = Files.newOutputStream(temp)) {
+                    properties.store(stream, "failed fetches");
+                }
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to write %s: %s".formatted(file, e));
+        }
+    }
+
+    private MvnNegativeCache() {
+    }
+}
@@ -0,0 +1,308 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of resolved artifact nodes. Every node is stored in a
+ * compact binary file inside the graph cache directory, next to the stamps of
+ * all poms it was derived from (its own, its parents and its imports). A node is
+ * only loaded if none of these poms changed since, so a warm start does not need
+ * to parse any xml.
+ */
+final class MvnNodeCache {
+
+    private static final int MAGIC = 0x4d564e43; // MVNC
+    private static final int FORMAT = 4;
+    private static final String EXTENSION = ".node";
+
+    /**
+     * Size and modification time of a pom a node was derived from
+     *
+     * @param path     the absolute path of the pom
+     * @param size     the size in bytes, or -1 if the pom does not exist
+     * @param modified the last modification time in milliseconds
+     */
+    record Stamp(@Nonnull String path, long size, long modified) {
+
+        @Nonnull
+        static Stamp of(@Nonnull final File file) {
+            return file.exists()
+                    ? new Stamp(file.getAbsolutePath(), file.length(), file.lastModified())
+                    : new Stamp(file.getAbsolutePath(), -1, 0);
+        }
+
+        boolean isValid() {
+            return equals(of(new File(path)));
+        }
+    }
+
+    /**
+     * A resolved artifact, as far as required by its dependents
+     *
+     * @param stamps       stamps of all poms this node was derived from
+     * @param groupId      the groupId
+     * @param artifactId   the artifactId
+     * @param packaging    the packaging
+     * @param version      the version
+     * @param parent       the parent coordinates, if any
+     * @param properties   the properties declared by the pom itself
+     * @param management   the dependencies managed by the pom itself, indexed by
+     *                     groupId:artifactId
+     * @param imports      the coordinates of all imported boms
+     * @param dependencies the dependency edges, including optional and
+     *                     out of scope ones
+     */
+    record Node(
+            @Nonnull List<Stamp> stamps,
+            @Nonnull String groupId,
+            @Nonnull String artifactId,
+            @Nonnull String packaging,
+            @Nonnull String version,
+            @Nullable MvnArtifact.Coordinates parent,
+            @Nonnull Map<String, String> properties,
+            @Nonnull Map<String, MvnPropertyScope.Managed> management,
+            @Nonnull List<MvnArtifact.Coordinates> imports,
+            @Nonnull List<MvnArtifact.Edge> dependencies) {
+
+        Node {
+            groupId = MvnCoordinate.intern(groupId);
+            artifactId = MvnCoordinate.intern(artifactId);
+            packaging = MvnCoordinate.intern(packaging);
+            version = MvnCoordinate.intern(version);
+        }
+    }
+
+    /**
+     * Load a node from the graph cache.
+     *
+     * @param prefix the artifact prefix inside the repository
+     * @return the node, or null if caching is disabled, it is not cached or stale
+     */
+    @Nullable
+    static Node load(@Nonnull final String prefix) {
+        final var dir = MvnTools.getGraphCacheDirectory();
+        if (dir == null)
+            return null;
+
+        final var file = new File(dir, prefix + EXTENSION);
+        final var node = file.exists()
+                ? readValid(file)
+                : null;
+
+        MvnStatistics.nodeLookup(node != null);
+        MvnEvents.cacheLookup("node", prefix, node != null);
+        return node;
+    }
+
+    @Nullable
+    private static Node readValid(@Nonnull final File file) {
+        try {
+            final var node = read(file);
+            if (node != null && node.stamps().stream().allMatch(Stamp::isValid))
+                return node;
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to load cached node %s: %s".formatted(file, e));
+        }
+        return null;
+    }
+
+    /**
+     * Store a node in the graph cache, if caching is enabled.
+     *
+     * @param prefix the artifact prefix inside the repository
+     * @param node   the node
+     */
+    static void store(@Nonnull final String prefix, @Nonnull final Node node) {
+        final var dir = MvnTools.getGraphCacheDirectory();
+        if (dir == null)
+            return;
+
+        final var file = new File(dir, prefix + EXTENSION);
+        try {
+            write(file, node);
+        } catch (final IOException e) {
+            MvnTools.getLogger().warning(() -> "Failed to store cached node %s: %s".formatted(file, e));
+        }
+    }
+
+    /**
+     * Read a node from a file.
+     *
+     * @param file the file
+     * @return the node, or null if the file has an unknown format
+     * @throws IOException if any
+     */
+    @Nullable
+    static Node read(@Nonnull final File file) throws IOException {
+        try (final var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                return null;
+
+            final var stampCount = in.readInt();
+            final var stamps = new ArrayList<Stamp>(stampCount);
+            for (int i = 0; i < stampCount; ++i)
+                stamps.add(new Stamp(readString(in), in.readLong(), in.readLong()));
+
+            final var groupId = readString(in);
+            final var artifactId = readString(in);
+            final var packaging = readString(in);
+            final var version = readString(in);
+            final var parent = in.readBoolean()
+                    ? readCoordinates(in)
+                    : null;
+
+            final var propertyCount = in.readInt();
+            final var properties = new HashMap<String, String>(propertyCount * 4 / 3 + 1);
+            for (int i = 0; i < propertyCount; ++i)
+                properties.put(readString(in), readString(in));
+
+            final var managementCount = in.readInt();
+            final var management = new HashMap<String, MvnPropertyScope.Managed>(managementCount * 4 / 3 + 1);
+            for (int i = 0; i < managementCount; ++i)
+                management.put(
+                        readString(in),
+                        new MvnPropertyScope.Managed(readString(in), readString(in), readString(in), readString(in)));
+
+            final var importCount = in.readInt();
+            final var imports = new ArrayList<MvnArtifact.Coordinates>(importCount);
+            for (int i = 0; i < importCount; ++i)
+                imports.add(readCoordinates(in));
+
+            final var dependencyCount = in.readInt();
+            final var dependencies = new ArrayList<MvnArtifact.Edge>(dependencyCount);
+            for (int i = 0; i < dependencyCount; ++i) {
+                final var coordinates = readCoordinates(in);
+                final var scope = readString(in);
+                final var optional = in.readBoolean();
+
+                final var exclusionCount = in.readInt();
+                final var exclusions = new ArrayList<String>(exclusionCount);
+                for (int j = 0; j < exclusionCount; ++j)
+                    exclusions.add(readString(in));
+
+                dependencies.add(new MvnArtifact.Edge(coordinates, scope, optional, exclusions));
+            }
+
+            return new Node(stamps, groupId, artifactId, packaging, version, parent, properties, management, imports, dependencies);
+        }
+    }
+
+    /**
+     * Write a node into a file. The file is replaced atomically, so concurrent
+     * readers never see a partial node.
+     *
+     * @param file the file
+     * @param node the node
+     * @throws IOException if any
+     */
+    static void write(@Nonnull final File file, @Nonnull final Node node) throws IOException {
+        final var dir = file.getParentFile().toPath();
+        Files.createDirectories(dir);
+
+        final var temp = Files.createTempFile(dir, file.getName(), ".part");
+        try {
+            try (final var out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+
+                out.writeInt(node.stamps().size());
+                for (final var stamp : node.stamps()) {
+                    writeString(out, stamp.path());
+                    out.writeLong(stamp.size());
+                    out.writeLong(stamp.modified());
+                }
+
+                writeString(out, node.groupId());
+                writeString(out, node.artifactId());
+                writeString(out, node.packaging());
+                writeString(out, node.version());
+                out.writeBoolean(node.parent() != null);
+                if (node.parent() != null)
+                    writeCoordinates(out, node.parent());
+
+                out.writeInt(node.properties().size());
+                for (final var entry : node.properties().entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+
+                out.writeInt(node.management().size());
+                for (final var entry : node.management().entrySet()) {
+                    final var managed = entry.getValue();
+                    writeString(out, entry.getKey());
+                    writeString(out, managed.packaging());
+                    writeString(out, managed.version());
+                    writeString(out, managed.scope());
+                    writeString(out, managed.optional());
+                }
+
+                out.writeInt(node.imports().size());
+                for (final var imported : node.imports())
+                    writeCoordinates(out, imported);
+
+                out.writeInt(node.dependencies().size());
+                for (final var dependency : node.dependencies()) {
+                    writeCoordinates(out, dependency.coordinates());
+                    writeString(out, dependency.scope());
+                    out.writeBoolean(dependency.optional());
+                    out.writeInt(dependency.exclusions().size());
+                    for (final var exclusion : dependency.exclusions())
+                        writeString(out, exclusion);
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Nonnull
+    private static MvnArtifact.Coordinates readCoordinates(@Nonnull final DataInput in) throws IOException {
+        return new MvnArtifact.Coordinates(readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeCoordinates(
+            @Nonnull final DataOutput out,
+            @Nonnull final MvnArtifact.Coordinates coordinates) throws IOException {
+        writeString(out, coordinates.groupId());
+        writeString(out, coordinates.artifactId());
+        writeString(out, coordinates.packaging());
+        writeString(out, coordinates.version());
+    }
+
+    @Nullable
+    private static String readString(@Nonnull final DataInput in) throws IOException {
+        final var length = in.readInt();
+        if (length < 0)
+            return null;
+
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(@Nonnull final DataOutput out, @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private MvnNodeCache() {
+    }
+}
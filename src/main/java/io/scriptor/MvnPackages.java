@@ -0,0 +1,325 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Bulk access to the packages of the dependency closure of an artifact, e.g. to
+ * aggregate service files, read manifests or explode all jars into one
+ * directory. Entry names are filtered on the indexed central directory of each
+ * jar before it is opened, so jars without matching entries are never opened.
+ * The remaining jars are processed by a bounded number of workers on the
+ * resolution executor, and all results are returned in closure order, then in
+ * central directory order, no matter which worker finished first.
+ */
+public final class MvnPackages {
+
+    /**
+     * Visits a single matching entry of a package.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Visitor<T> {
+
+        /**
+         * Visit an entry. Called concurrently for entries of different packages.
+         *
+         * @param artifact the artifact providing the entry
+         * @param entry    the entry
+         * @param stream   the contents of the entry, closed after the visit
+         * @return the result, or null to skip the entry
+         * @throws IOException if reading the entry fails
+         */
+        @Nullable
+        T visit(@Nonnull MvnArtifact artifact, @Nonnull JarEntry entry, @Nonnull InputStream stream) throws IOException;
+    }
+
+    /**
+     * The result of visiting an entry
+     *
+     * @param artifact the artifact providing the entry
+     * @param name     the entry name
+     * @param value    the value returned by the visitor
+     * @param <T>      the result type
+     */
+    public record Visited<T>(@Nonnull MvnArtifact artifact, @Nonnull String name, @Nonnull T value) {
+    }
+
+    /**
+     * Get the packages of the dependency closure of an artifact, processed by as
+     * many workers as the resolution parallelism allows.
+     *
+     * @param root the root artifact
+     * @return the packages
+     */
+    @Nonnull
+    public static MvnPackages of(@Nonnull final MvnArtifact root) {
+        return of(root, MvnTools.getParallelism());
+    }
+
+    /**
+     * Get the packages of the dependency closure of an artifact. Missing packages
+     * are fetched as one wave.
+     *
+     * @param root        the root artifact
+     * @param concurrency the maximum number of packages read at the same time
+     * @return the packages
+     */
+    @Nonnull
+    public static MvnPackages of(@Nonnull final MvnArtifact root, final int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be at least 1, got " + concurrency);
+
+        return new MvnPackages(fetchJars(root), concurrency);
+    }
+
+    /**
+     * Get all artifacts with a jar in the dependency closure of an artifact, and
+     * make sure their jars are in the local repository. Corrupt jars are dropped,
+     * and all missing ones are fetched as one wave.
+     *
+     * @param root the root artifact
+     * @return the artifacts, in breadth first order
+     */
+    @Nonnull
+    static List<MvnArtifact> fetchJars(@Nonnull final MvnArtifact root) {
+        final var artifacts = root.getClosure()
+                .stream()
+                .filter(MvnArtifact::isComplete)
+                .filter(artifact -> MvnArtifact.JAR.equals(artifact.getExtension()))
+                .toList();
+
+        MvnChecksums.dropCorrupt(
+                artifacts.stream()
+                        .map(MvnArtifact::getPackageFile)
+                        .toList());
+
+        MvnTools.fetchArtifacts(
+                artifacts.stream()
+                        .filter(artifact -> !artifact.getPackageFile().exists())
+                        .map(MvnArtifact::getPackageId)
+                        .toList(),
+                false);
+        return artifacts;
+    }
+
+    private final List<MvnArtifact> mArtifacts;
+    private final int mConcurrency;
+
+    private MvnPackages(@Nonnull final List<MvnArtifact> artifacts, final int concurrency) {
+        mArtifacts = artifacts;
+        mConcurrency = concurrency;
+    }
+
+    /**
+     * Get all artifacts with a package, in breadth first order.
+     *
+     * @return the artifacts
+     */
+    @Nonnull
+    public List<MvnArtifact> getArtifacts() {
+        return Collections.unmodifiableList(mArtifacts);
+    }
+
+    /**
+     * Get the names of all entries matching a filter, without opening any jar.
+     *
+     * @param filter the entry name filter
+     * @return the matching names of each artifact, in breadth first order
+     */
+    @Nonnull
+    public Map<MvnArtifact, List<String>> list(@Nonnull final Predicate<String> filter) {
+        final List<List<String>> matching;
+        try {
+            matching = run(mArtifacts.size(), index -> MvnClassIndex.readNames(mArtifacts.get(index))
+                    .stream()
+                    .filter(filter)
+                    .toList());
+        } catch (final IOException e) {
+            // reading the names never fails, unreadable jars have no names
+            throw new IllegalStateException(e);
+        }
+
+        final Map<MvnArtifact, List<String>> names = new LinkedHashMap<>();
+        for (int i = 0; i < mArtifacts.size(); ++i)
+            if (!matching.get(i).isEmpty())
+                names.put(mArtifacts.get(i), matching.get(i));
+        return names;
+    }
+
+    /**
+     * Visit all entries matching a filter, e.g. all "META-INF/services/" files.
+     *
+     * @param filter  the entry name filter
+     * @param visitor the visitor
+     * @param <T>     the result type
+     * @return the non-null visitor results, in breadth first order of the artifacts,
+     * then in central directory order
+     * @throws IOException if a package could not be read, or a visit failed
+     */
+    @Nonnull
+    public <T> List<Visited<T>> visit(
+            @Nonnull final Predicate<String> filter,
+            @Nonnull final Visitor<T> visitor) throws IOException {
+
+        final var names = list(filter);
+        final var artifacts = List.copyOf(names.keySet());
+
+        final List<List<Visited<T>>> results = run(artifacts.size(), index -> {
+            final var artifact = artifacts.get(index);
+            final List<Visited<T>> visited = new ArrayList<>();
+            try (final var lease = artifact.leasePackage()) {
+                final var jar = lease.getJar();
+                for (final var name : names.get(artifact)) {
+                    final var entry = jar.getJarEntry(name);
+                    if (entry == null)
+                        continue;
+
+                    try (final var stream = jar.getInputStream(entry)) {
+                        final var value = visitor.visit(artifact, entry, stream);
+                        if (value != null)
+                            visited.add(new Visited<>(artifact, name, value));
+                    }
+                }
+            }
+            return visited;
+        });
+
+        return results.stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /**
+     * Extract all entries matching a filter into a directory. If multiple packages
+     * provide the same entry, the one nearest to the root wins, like on the
+     * classpath. Entries are copied straight from the inflating zip stream into
+     * the target file.
+     *
+     * @param filter    the entry name filter
+     * @param directory the target directory
+     * @return the extracted entry names and the artifacts providing them, in
+     * breadth first order of the artifacts, then in central directory order
+     * @throws IOException if a package could not be read, an entry could not be
+     *                     written, or an entry name points outside the directory
+     */
+    @Nonnull
+    public Map<String, MvnArtifact> extract(
+            @Nonnull final Predicate<String> filter,
+            @Nonnull final Path directory) throws IOException {
+
+        final var root = directory.toAbsolutePath().normalize();
+
+        // decide which artifact provides every entry before anything is written, so
+        // the result does not depend on which worker gets to an entry first
+        final Map<String, MvnArtifact> owners = new LinkedHashMap<>();
+        final Map<MvnArtifact, List<String>> owned = new LinkedHashMap<>();
+        list(filter).forEach((artifact, names) -> {
+            final List<String> own = new ArrayList<>();
+            for (final var name : names)
+                if (owners.putIfAbsent(name, artifact) == null)
+                    own.add(name);
+            if (!own.isEmpty())
+                owned.put(artifact, own);
+        });
+
+        final var artifacts = List.copyOf(owned.keySet());
+        run(artifacts.size(), index -> {
+            final var artifact = artifacts.get(index);
+            try (final var lease = artifact.leasePackage()) {
+                final var jar = lease.getJar();
+                for (final var name : owned.get(artifact))
+                    extract(jar, name, root);
+            }
+            return null;
+        });
+
+        return Collections.unmodifiableMap(owners);
+    }
+
+    private static void extract(@Nonnull final JarFile jar, @Nonnull final String name, @Nonnull final Path root) throws IOException {
+        final var target = root.resolve(name).normalize();
+        if (!target.startsWith(root) || target.equals(root))
+            throw new IOException("Entry %s of %s points outside of %s".formatted(name, jar.getName(), root));
+
+        final var entry = jar.getJarEntry(name);
+        if (entry == null)
+            return;
+
+        Files.createDirectories(target.getParent());
+        try (final var stream = jar.getInputStream(entry)) {
+            Files.copy(stream, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A task reading a single package
+     *
+     * @param <R> the result type
+     */
+    @FunctionalInterface
+    private interface Task<R> {
+
+        R run(int index) throws IOException;
+    }
+
+    /**
+     * Run a task for every package index, using at most the configured number of
+     * workers on the resolution executor. Every worker takes the next index until
+     * none are left, so the concurrency stays bounded without blocking any thread.
+     *
+     * @param count the number of packages
+     * @param task  the task
+     * @param <R>   the result type
+     * @return the results, in index order
+     * @throws IOException the failure of the lowest failing index, if any
+     */
+    @Nonnull
+    private <R> List<R> run(final int count, @Nonnull final Task<R> task) throws IOException {
+        final List<R> results = new ArrayList<>(Collections.nCopies(count, null));
+        final var failures = new IOException[count];
+        final var next = new AtomicInteger();
+
+        final var executor = MvnTools.getExecutor();
+        final var workers = new CompletableFuture<?>[Math.min(mConcurrency, count)];
+        for (int i = 0; i < workers.length; ++i)
+            workers[i] = CompletableFuture.runAsync(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < count)
+                    try {
+                        results.set(index, task.run(index));
+                    } catch (final IOException e) {
+                        failures[index] = e;
+                    }
+            }, executor);
+        MvnTools.runDeferred();
+
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error cause)
+                throw cause;
+            throw e;
+        }
+
+        for (final var failure : failures)
+            if (failure != null)
+                throw failure;
+        return results;
+    }
+}
@@ -0,0 +1,175 @@
+package io.scriptor;
+
+import org.apache.maven.model.*;
+
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming pom parser, extracting only the parts of a pom {@link MvnArtifact}
+ * uses: coordinates, parent, properties, dependency management and
+ * dependencies. Everything else, e.g. build, reporting and profiles, is skipped
+ * without building any objects for it.
+ */
+final class MvnPomParser {
+
+    private static final XMLInputFactory factory = XMLInputFactory.newFactory();
+
+    static {
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Parse the relevant parts of a pom file.
+     *
+     * @param pom the pom file
+     * @return the partial model
+     * @throws IOException        if the file could not be read
+     * @throws XMLStreamException if the file is not a pom this parser understands
+     */
+    @Nonnull
+    static Model parse(@Nonnull final File pom) throws IOException, XMLStreamException {
+        try (final var stream = new BufferedInputStream(new FileInputStream(pom))) {
+            final var reader = factory.createXMLStreamReader(stream);
+            try {
+                reader.nextTag();
+                if (!"project".equals(reader.getLocalName()))
+                    throw new XMLStreamException("expected project, got " + reader.getLocalName());
+                return parseProject(reader);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Nonnull
+    private static Model parseProject(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        final var model = new Model();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "groupId" -> model.setGroupId(text(reader));
+                case "artifactId" -> model.setArtifactId(text(reader));
+                case "version" -> model.setVersion(text(reader));
+                case "packaging" -> model.setPackaging(text(reader));
+                case "parent" -> model.setParent(parseParent(reader));
+                case "properties" -> {
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                        model.getProperties().setProperty(reader.getLocalName(), text(reader));
+                }
+                case "dependencyManagement" -> {
+                    final var management = new DependencyManagement();
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                        if ("dependencies".equals(reader.getLocalName()))
+                            management.setDependencies(parseDependencies(reader));
+                        else
+                            skip(reader);
+                    model.setDependencyManagement(management);
+                }
+                case "dependencies" -> model.setDependencies(parseDependencies(reader));
+                default -> skip(reader);
+            }
+        }
+        return model;
+    }
+
+    @Nonnull
+    private static Parent parseParent(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        final var parent = new Parent();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "groupId" -> parent.setGroupId(text(reader));
+                case "artifactId" -> parent.setArtifactId(text(reader));
+                case "version" -> parent.setVersion(text(reader));
+                case "relativePath" -> parent.setRelativePath(text(reader));
+                default -> skip(reader);
+            }
+        }
+        return parent;
+    }
+
+    @Nonnull
+    private static List<Dependency> parseDependencies(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        final var dependencies = new ArrayList<Dependency>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!"dependency".equals(reader.getLocalName())) {
+                skip(reader);
+                continue;
+            }
+
+            final var dependency = new Dependency();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "groupId" -> dependency.setGroupId(text(reader));
+                    case "artifactId" -> dependency.setArtifactId(text(reader));
+                    case "version" -> dependency.setVersion(text(reader));
+                    case "type" -> dependency.setType(text(reader));
+                    case "classifier" -> dependency.setClassifier(text(reader));
+                    case "scope" -> dependency.setScope(text(reader));
+                    case "optional" -> dependency.setOptional(text(reader));
+                    case "exclusions" -> dependency.setExclusions(parseExclusions(reader));
+                    default -> skip(reader);
+                }
+            }
+            dependencies.add(dependency);
+        }
+        return dependencies;
+    }
+
+    @Nonnull
+    private static List<Exclusion> parseExclusions(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        final var exclusions = new ArrayList<Exclusion>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!"exclusion".equals(reader.getLocalName())) {
+                skip(reader);
+                continue;
+            }
+
+            final var exclusion = new Exclusion();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "groupId" -> exclusion.setGroupId(text(reader));
+                    case "artifactId" -> exclusion.setArtifactId(text(reader));
+                    default -> skip(reader);
+                }
+            }
+            exclusions.add(exclusion);
+        }
+        return exclusions;
+    }
+
+    /**
+     * Read the trimmed text of the current element, like the maven reader does.
+     */
+    @Nonnull
+    private static String text(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        return reader.getElementText().trim();
+    }
+
+    /**
+     * Skip the current element including all of its children.
+     */
+    private static void skip(@Nonnull final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final var event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                ++depth;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                --depth;
+        }
+    }
+
+    private MvnPomParser() {
+    }
+}
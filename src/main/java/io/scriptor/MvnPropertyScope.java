@@ -0,0 +1,340 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Layered property scope of an artifact. A scope only holds the properties and
+ * managed dependencies declared by its own pom, lookups fall through to the
+ * parent scope and then to the scopes of imported boms, so nothing gets copied
+ * from one artifact to the next.
+ * <p>
+ * Values are interpolated late, in the scope the lookup started in, so a parent
+ * property like "${project.version}" or a managed version like
+ * "${jackson.version}" sees the values of the inheriting artifact, like maven
+ * does. Boms are interpolated in their own scope. Embedded and nested
+ * expressions, e.g. "${a}-${b}" or "${lib.${flavor}.version}", are supported.
+ * Expressions referencing undefined properties are kept literally, like maven
+ * does. Every scope memoizes the values it resolved.
+ */
+final class MvnPropertyScope {
+
+    /**
+     * A managed dependency, as declared by a dependency management section
+     *
+     * @param packaging the packaging, or null if not declared
+     * @param version   the version, or null if not declared
+     * @param scope     the scope, or null if not declared
+     * @param optional  the optional flag, or null if not declared
+     */
+    record Managed(
+            @Nullable String packaging,
+            @Nullable String version,
+            @Nullable String scope,
+            @Nullable String optional) {
+    }
+
+    /**
+     * A compiled template, alternating between literal text and expressions. The
+     * key of an expression is a template itself, to support nested expressions.
+     *
+     * @param literals    the literal parts, one more than there are expressions
+     * @param expressions the expression keys
+     */
+    private record Template(@Nonnull String[] literals, @Nonnull Template[] expressions) {
+    }
+
+    private static final String START = "${";
+    private static final char END = '}';
+
+    /**
+     * Sentinel for memoized lookups that did not resolve
+     */
+    private static final String UNRESOLVED = new String("");
+
+    /**
+     * A dependency without any managed values
+     */
+    static final Managed UNMANAGED = new Managed(null, null, null, null);
+
+    private static final int TEMPLATE_CACHE_SIZE = 4096;
+
+    /**
+     * Compiled templates, indexed by their source, least recently used first. Poms
+     * share most of their expressions, so each one is usually compiled once.
+     */
+    private static final Map<String, Template> templates = new LinkedHashMap<>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Template> eldest) {
+            return size() > TEMPLATE_CACHE_SIZE;
+        }
+    };
+
+    private final Map<String, String> mProperties;
+    private final Map<String, Managed> mManagement;
+    private final MvnPropertyScope mParent;
+    private final List<MvnPropertyScope> mImports;
+
+    private final Map<String, String> mResolved = new ConcurrentHashMap<>();
+    private final Map<String, Managed> mManaged = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new scope.
+     *
+     * @param properties the properties declared by the pom
+     * @param management the managed dependencies declared by the pom, indexed by
+     *                   groupId:artifactId
+     * @param parent     the scope of the parent, if any
+     * @param imports    the scopes of all imported boms, in declaration order
+     */
+    MvnPropertyScope(
+            @Nonnull final Map<String, String> properties,
+            @Nonnull final Map<String, Managed> management,
+            @Nullable final MvnPropertyScope parent,
+            @Nonnull final List<MvnPropertyScope> imports) {
+        mProperties = properties;
+        mManagement = management;
+        mParent = parent;
+        mImports = imports;
+    }
+
+    /**
+     * Get the interpolated value of a property.
+     *
+     * @param key the property key, without "${" and "}"
+     * @return the value, or null if the property is not defined
+     */
+    @Nullable
+    String get(@Nonnull final String key) {
+        return resolve(key, new HashSet<>());
+    }
+
+    /**
+     * Interpolate all expressions in a value.
+     *
+     * @param value the value, may be null
+     * @return the interpolated value, or null if the value is null
+     */
+    @Nullable
+    String interpolate(@Nullable final String value) {
+        if (value == null)
+            return null;
+        if (!value.contains(START))
+            return value;
+        return evaluate(compile(value), new HashSet<>());
+    }
+
+    /**
+     * Get a managed dependency, with all of its values interpolated.
+     *
+     * @param key the groupId:artifactId of the dependency
+     * @return the managed dependency, or null if it is not managed
+     */
+    @Nullable
+    Managed getManaged(@Nonnull final String key) {
+        final var memo = mManaged.get(key);
+        if (memo != null)
+            return memo == UNMANAGED ? null : memo;
+
+        final var managed = findManaged(key, this);
+        mManaged.put(key, managed != null ? managed : UNMANAGED);
+        return managed;
+    }
+
+    /**
+     * Find a managed dependency in this scope, its parents and its imports.
+     * Entries inherited from parents are interpolated in the context scope,
+     * imported entries in the scope of their bom.
+     */
+    @Nullable
+    private Managed findManaged(@Nonnull final String key, @Nonnull final MvnPropertyScope context) {
+        final var managed = mManagement.get(key);
+        if (managed != null)
+            return new Managed(
+                    context.interpolate(managed.packaging()),
+                    context.interpolate(managed.version()),
+                    context.interpolate(managed.scope()),
+                    context.interpolate(managed.optional()));
+
+        if (mParent != null) {
+            final var inherited = mParent.findManaged(key, context);
+            if (inherited != null)
+                return inherited;
+        }
+
+        for (final var imported : mImports) {
+            final var found = imported.getManaged(key);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    /**
+     * Resolve a property in this scope, memoizing the result.
+     *
+     * @param key       the property key
+     * @param resolving the keys currently being resolved, to detect cycles
+     * @return the value, or null if undefined
+     */
+    @Nullable
+    private String resolve(@Nonnull final String key, @Nonnull final Set<String> resolving) {
+        final var memo = mResolved.get(key);
+        if (memo != null)
+            return memo == UNRESOLVED ? null : memo;
+
+        if (!resolving.add(key))
+            return null;
+
+        final var event = new MvnEvents.PropertyResolution();
+        event.begin();
+
+        final String value;
+        try {
+            value = lookup(key, this, resolving);
+        } finally {
+            resolving.remove(key);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.resolved = value != null;
+            event.commit();
+        }
+
+        mResolved.put(key, value != null ? value : UNRESOLVED);
+        return value;
+    }
+
+    /**
+     * Look up a property in this scope, its parents and its imports. Properties
+     * declared by this scope or its parents are interpolated in the context scope,
+     * imported properties in the scope of their bom.
+     */
+    @Nullable
+    private String lookup(
+            @Nonnull final String key,
+            @Nonnull final MvnPropertyScope context,
+            @Nonnull final Set<String> resolving) {
+        final var raw = mProperties.get(key);
+        if (raw != null)
+            return raw.contains(START)
+                    ? context.evaluate(compile(raw), resolving)
+                    : raw;
+
+        if (mParent != null) {
+            final var inherited = mParent.lookup(key, context, resolving);
+            if (inherited != null)
+                return inherited;
+        }
+
+        for (final var imported : mImports) {
+            final var found = imported.get(key);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    /**
+     * Evaluate a compiled template in this scope. Expressions that do not resolve
+     * are kept as they are.
+     *
+     * @return the result
+     */
+    @Nonnull
+    private String evaluate(@Nonnull final Template template, @Nonnull final Set<String> resolving) {
+        final var literals = template.literals();
+        final var expressions = template.expressions();
+        if (expressions.length == 0)
+            return literals[0];
+
+        final var builder = new StringBuilder(literals[0]);
+        for (int i = 0; i < expressions.length; ++i) {
+            final var key = evaluate(expressions[i], resolving);
+            final var value = resolve(key, resolving);
+            if (value != null)
+                builder.append(value);
+            else
+                builder.append(START).append(key).append(END);
+            builder.append(literals[i + 1]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Compile a template, or get the previously compiled one.
+     *
+     * @param source the template source
+     * @return the template
+     */
+    @Nonnull
+    private static Template compile(@Nonnull final String source) {
+        synchronized (templates) {
+            final var template = templates.get(source);
+            if (template != null)
+                return template;
+        }
+
+        final var compiled = parse(source);
+        synchronized (templates) {
+            templates.put(source, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Drop all compiled templates.
+     */
+    static void clearCache() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    @Nonnull
+    private static Template parse(@Nonnull final String source) {
+        final List<String> literals = new ArrayList<>();
+        final List<Template> expressions = new ArrayList<>();
+
+        final var literal = new StringBuilder();
+        int index = 0;
+        while (index < source.length()) {
+            final var start = source.indexOf(START, index);
+            if (start < 0)
+                break;
+
+            // find the matching end, skipping over nested expressions
+            int depth = 1;
+            int end = start + START.length();
+            while (end < source.length() && depth > 0) {
+                if (source.startsWith(START, end)) {
+                    ++depth;
+                    end += START.length();
+                    continue;
+                }
+                if (source.charAt(end) == END)
+                    --depth;
+                ++end;
+            }
+
+            // unterminated expressions are kept as literal text
+            if (depth > 0)
+                break;
+
+            literal.append(source, index, start);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            expressions.add(compile(source.substring(start + START.length(), end - 1)));
+            index = end;
+        }
+
+        literal.append(source, index, source.length());
+        literals.add(literal.toString());
+        return new Template(literals.toArray(String[]::new), expressions.toArray(Template[]::new));
+    }
+}
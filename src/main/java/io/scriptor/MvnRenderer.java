@@ -0,0 +1,197 @@
+package io.scriptor;
+
+import guru.nidi.graphviz.engine.Engine;
+import guru.nidi.graphviz.engine.Graphviz;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rendering of DOT graphs into files. Graphs are laid out by a local dot
+ * executable if there is one, and by the bundled graphviz engine otherwise.
+ * Large graphs use a force directed layout instead of the hierarchical one,
+ * which does not scale beyond a few hundred nodes. Every rendered file is kept
+ * in the cache directory, keyed by a hash of the graph source and the rendering
+ * options, so identical graphs are only rendered once, across processes. The
+ * cache keeps the most recently used renderings only.
+ */
+final class MvnRenderer {
+
+    private static final int FORMAT = 1;
+
+    // graphs with more nodes than this are laid out by force instead of by rank
+    static final int LARGE_GRAPH = 500;
+
+    // the maximum number of renderings kept in the cache directory
+    static final int CACHE_SIZE = 256;
+
+    /**
+     * Render a graph into a file, reusing a cached rendering of the same graph if
+     * there is one.
+     *
+     * @param dot    the graph source in DOT format
+     * @param nodes  the number of nodes in the graph
+     * @param format the output format
+     * @param file   the output file
+     * @throws IOException if rendering fails, or the output could not be written
+     */
+    static void render(
+            @Nonnull final String dot,
+            final int nodes,
+            @Nonnull final MvnGraphFormat format,
+            @Nonnull final File file) throws IOException {
+
+        final var target = file.getAbsoluteFile().toPath();
+        if (target.getParent() != null)
+            Files.createDirectories(target.getParent());
+
+        // the source needs no layout, and hashing it costs as much as writing it
+        if (format == MvnGraphFormat.DOT) {
+            Files.writeString(target, dot, StandardCharsets.UTF_8);
+            return;
+        }
+
+        final var executable = MvnTools.getDotExecutable();
+        final var large = nodes > LARGE_GRAPH;
+        final var layout = executable != null
+                ? large ? "sfdp" : "dot"
+                : large ? Engine.NEATO.name() : Engine.DOT.name();
+
+        final var dir = new File(MvnTools.getCacheDirectory(), "render").toPath();
+        final var cached = dir.resolve(getKey(dot, format, executable != null, layout) + '.' + format.getType());
+        if (Files.exists(cached)) {
+            // the modification time orders the renderings by their last use
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        Files.createDirectories(dir);
+        final var temp = Files.createTempFile(dir, cached.getFileName().toString(), ".part");
+        try {
+            if (executable != null)
+                renderWithExecutable(executable, dot, large, layout, format, temp);
+            else
+                Graphviz.fromString(dot)
+                        .engine(Engine.valueOf(layout))
+                        .render(format.getFormat())
+                        .toFile(temp.toFile());
+            Files.move(temp, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+        prune(dir);
+    }
+
+    /**
+     * Delete the least recently used renderings until the cache fits its size.
+     * Other processes may prune the same directory at the same time, so files
+     * that are already gone are skipped.
+     */
+    private static void prune(@Nonnull final Path dir) throws IOException {
+        final List<Path> renderings;
+        try (final var files = Files.list(dir)) {
+            renderings = files.filter(file -> !file.getFileName().toString().endsWith(".part")).toList();
+        }
+        if (renderings.size() <= CACHE_SIZE)
+            return;
+
+        final Map<Path, Long> used = new HashMap<>();
+        for (final var file : renderings)
+            try {
+                used.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (final NoSuchFileException ignored) {
+            }
+
+        used.entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(Math.max(0, used.size() - CACHE_SIZE))
+                .forEach(entry -> {
+                    try {
+                        Files.deleteIfExists(entry.getKey());
+                    } catch (final IOException e) {
+                        MvnTools.getLogger().warning(() -> "Failed to delete %s: %s".formatted(entry.getKey(), e));
+                    }
+                });
+    }
+
+    private static void renderWithExecutable(
+            @Nonnull final String executable,
+            @Nonnull final String dot,
+            final boolean large,
+            @Nonnull final String layout,
+            @Nonnull final MvnGraphFormat format,
+            @Nonnull final Path output) throws IOException {
+
+        final List<String> command = new ArrayList<>();
+        command.add(executable);
+        command.add("-K" + layout);
+        command.add("-T" + format.getType());
+        if (large) {
+            // remove overlaps cheaply, and skip routing edges around nodes
+            command.add("-Goverlap=prism");
+            command.add("-Gsplines=false");
+            command.add("-Goutputorder=edgesfirst");
+        }
+        command.add("-o" + output);
+
+        final var process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (final var stdin = process.getOutputStream()) {
+            stdin.write(dot.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final int code;
+        try {
+            code = process.waitFor();
+        } catch (final InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering", e);
+        }
+
+        if (code != 0)
+            throw new IOException("Failed to render graph: %s exited with code %d".formatted(executable, code));
+    }
+
+    @Nonnull
+    private static String getKey(
+            @Nonnull final String dot,
+            @Nonnull final MvnGraphFormat format,
+            final boolean local,
+            @Nonnull final String layout) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // the renderer is part of the key, as the bundled engine renders differently
+        digest.update("%d:%s:%s:%s\n".formatted(FORMAT, format, local ? "local" : "bundled", layout)
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(dot.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MvnRenderer() {
+    }
+}
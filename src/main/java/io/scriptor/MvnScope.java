@@ -0,0 +1,36 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The scope dependencies get resolved in. Every artifact is resolved as a
+ * dependency of some consumer, so test, provided, system and optional
+ * dependencies are never followed, and runtime dependencies only propagate
+ * through the runtime scope.
+ */
+public enum MvnScope {
+
+    /**
+     * Follow compile dependencies only
+     */
+    COMPILE,
+
+    /**
+     * Follow compile and runtime dependencies
+     */
+    RUNTIME;
+
+    /**
+     * Check if a dependency with a declared scope is followed in this scope.
+     *
+     * @param scope the declared scope of the dependency
+     * @return true if the dependency is followed
+     */
+    public boolean includes(@Nonnull final String scope) {
+        return switch (scope) {
+            case "compile" -> true;
+            case "runtime" -> this == RUNTIME;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,374 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolution statistics, accumulated over all artifacts resolved by this
+ * process. Every declared dependency is counted once per artifact declaring it,
+ * no matter how often the graph is walked. All counters are striped, so
+ * recording stays cheap under contention; a snapshot is not atomic across
+ * counters.
+ */
+public final class MvnStatistics {
+
+    /**
+     * A snapshot of a duration histogram. Durations are bucketed by powers of two
+     * microseconds, so percentiles are upper bounds within a factor of two.
+     *
+     * @param count      the number of recorded durations
+     * @param totalNanos the sum of all durations
+     * @param maxNanos   the longest duration
+     * @param buckets    the number of durations per bucket, where bucket 0 holds
+     *                   durations below 1µs and bucket i those below 2^i µs
+     */
+    public record Timing(long count, long totalNanos, long maxNanos, @Nonnull long[] buckets) {
+
+        public double meanMillis() {
+            return count == 0 ? 0.0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Get an upper bound of a percentile.
+         *
+         * @param percentile the percentile, between 0 and 1
+         * @return the upper bound of the bucket the percentile falls into, in
+         * nanoseconds
+         */
+        public long percentileNanos(final double percentile) {
+            if (count == 0)
+                return 0;
+
+            final var rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; ++i) {
+                seen += buckets[i];
+                if (seen >= rank)
+                    return Math.min((1L << i) * 1000, maxNanos);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Timing other
+                    && count == other.count
+                    && totalNanos == other.totalNanos
+                    && maxNanos == other.maxNanos
+                    && Arrays.equals(buckets, other.buckets);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(count) * 31 + Arrays.hashCode(buckets);
+        }
+
+        @Override
+        @Nonnull
+        public String toString() {
+            return "%d, mean %.3fms, p50 <%.3fms, p99 <%.3fms, max %.3fms".formatted(
+                    count,
+                    meanMillis(),
+                    percentileNanos(0.5) / 1e6,
+                    percentileNanos(0.99) / 1e6,
+                    maxNanos / 1e6);
+        }
+    }
+
+    /**
+     * A snapshot of the lookups in a cache
+     *
+     * @param hits   the number of hits
+     * @param misses the number of misses
+     */
+    public record Cache(long hits, long misses) {
+
+        public double hitRatio() {
+            final var lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        @Nonnull
+        public String toString() {
+            return "%d hits, %d misses, %.1f%%".formatted(hits, misses, hitRatio() * 100);
+        }
+    }
+
+    /**
+     * A snapshot of the statistics
+     *
+     * @param materialized      the number of artifacts materialized
+     * @param followed          the number of dependencies followed
+     * @param skippedScope      the number of dependencies skipped for their scope
+     * @param skippedOptional   the number of optional dependencies skipped
+     * @param skippedExclusions the number of dependencies skipped for an exclusion
+     * @param parses            the pom parse durations
+     * @param fetches           the fetch durations, one per transport invocation
+     * @param fetchedArtifacts  the number of artifacts requested from the transport
+     * @param artifacts         the lookups in the artifact cache
+     * @param models            the lookups in the parsed pom cache
+     * @param nodes             the lookups in the graph cache on disk
+     * @param jarOpens          the number of packages opened
+     */
+    public record Snapshot(
+            long materialized,
+            long followed,
+            long skippedScope,
+            long skippedOptional,
+            long skippedExclusions,
+            @Nonnull Timing parses,
+            @Nonnull Timing fetches,
+            long fetchedArtifacts,
+            @Nonnull Cache artifacts,
+            @Nonnull Cache models,
+            @Nonnull Cache nodes,
+            long jarOpens) {
+
+        public long skipped() {
+            return skippedScope + skippedOptional + skippedExclusions;
+        }
+
+        /**
+         * Flatten this snapshot into named metrics, e.g. for exporting them to a
+         * monitoring system.
+         *
+         * @return the metrics, indexed by dotted names
+         */
+        @Nonnull
+        public Map<String, Number> toMap() {
+            final Map<String, Number> metrics = new LinkedHashMap<>();
+            metrics.put("materialized", materialized);
+            metrics.put("dependencies.followed", followed);
+            metrics.put("dependencies.skipped.scope", skippedScope);
+            metrics.put("dependencies.skipped.optional", skippedOptional);
+            metrics.put("dependencies.skipped.exclusions", skippedExclusions);
+            putTiming(metrics, "parse", parses);
+            putTiming(metrics, "fetch", fetches);
+            metrics.put("fetch.artifacts", fetchedArtifacts);
+            putCache(metrics, "cache.artifact", artifacts);
+            putCache(metrics, "cache.model", models);
+            putCache(metrics, "cache.node", nodes);
+            metrics.put("jar.opens", jarOpens);
+            return metrics;
+        }
+
+        private static void putTiming(@Nonnull final Map<String, Number> metrics, @Nonnull final String name, @Nonnull final Timing timing) {
+            metrics.put(name + ".count", timing.count());
+            metrics.put(name + ".nanos.total", timing.totalNanos());
+            metrics.put(name + ".nanos.max", timing.maxNanos());
+            metrics.put(name + ".nanos.p50", timing.percentileNanos(0.5));
+            metrics.put(name + ".nanos.p99", timing.percentileNanos(0.99));
+        }
+
+        private static void putCache(@Nonnull final Map<String, Number> metrics, @Nonnull final String name, @Nonnull final Cache cache) {
+            metrics.put(name + ".hits", cache.hits());
+            metrics.put(name + ".misses", cache.misses());
+            metrics.put(name + ".ratio", cache.hitRatio());
+        }
+
+        @Override
+        @Nonnull
+        public String toString() {
+            return """
+                    materialized artifacts:        %d
+                    followed dependencies:         %d
+                    skipped dependencies:          %d
+                      out of scope:                %d
+                      optional:                    %d
+                      excluded:                    %d
+                    pom parses:                    %s
+                    fetches:                       %s
+                      artifacts:                   %d
+                    artifact cache:                %s
+                    model cache:                   %s
+                    graph cache:                   %s
+                    opened packages:               %d
+                    """.formatted(
+                    materialized,
+                    followed,
+                    skipped(),
+                    skippedScope,
+                    skippedOptional,
+                    skippedExclusions,
+                    parses,
+                    fetches,
+                    fetchedArtifacts,
+                    artifacts,
+                    models,
+                    nodes,
+                    jarOpens);
+        }
+    }
+
+    /**
+     * Lock free histogram of durations
+     */
+    private static final class Histogram {
+
+        private static final int BUCKETS = 32;
+
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mTotal = new LongAdder();
+        private final LongAccumulator mMax = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] mBuckets = new LongAdder[BUCKETS];
+
+        private Histogram() {
+            for (int i = 0; i < BUCKETS; ++i)
+                mBuckets[i] = new LongAdder();
+        }
+
+        private void record(final long nanos) {
+            final var micros = nanos / 1000;
+            final var bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            mCount.increment();
+            mTotal.add(nanos);
+            mMax.accumulate(nanos);
+            mBuckets[bucket].increment();
+        }
+
+        @Nonnull
+        private Timing snapshot() {
+            final var buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i)
+                buckets[i] = mBuckets[i].sum();
+            return new Timing(mCount.sum(), mTotal.sum(), mMax.get(), buckets);
+        }
+
+        private void reset() {
+            mCount.reset();
+            mTotal.reset();
+            mMax.reset();
+            for (final var bucket : mBuckets)
+                bucket.reset();
+        }
+    }
+
+    /**
+     * Hit and miss counters of a cache
+     */
+    private static final class Lookups {
+
+        private final LongAdder mHits = new LongAdder();
+        private final LongAdder mMisses = new LongAdder();
+
+        private void record(final boolean hit) {
+            (hit ? mHits : mMisses).increment();
+        }
+
+        @Nonnull
+        private Cache snapshot() {
+            return new Cache(mHits.sum(), mMisses.sum());
+        }
+
+        private void reset() {
+            mHits.reset();
+            mMisses.reset();
+        }
+    }
+
+    private static final LongAdder materialized = new LongAdder();
+    private static final LongAdder followed = new LongAdder();
+    private static final LongAdder skippedScope = new LongAdder();
+    private static final LongAdder skippedOptional = new LongAdder();
+    private static final LongAdder skippedExclusions = new LongAdder();
+    private static final Histogram parses = new Histogram();
+    private static final Histogram fetches = new Histogram();
+    private static final LongAdder fetchedArtifacts = new LongAdder();
+    private static final Lookups artifacts = new Lookups();
+    private static final Lookups models = new Lookups();
+    private static final Lookups nodes = new Lookups();
+    private static final LongAdder jarOpens = new LongAdder();
+
+    /**
+     * Take a snapshot of the current statistics.
+     *
+     * @return the snapshot
+     */
+    @Nonnull
+    public static Snapshot snapshot() {
+        return new Snapshot(
+                materialized.sum(),
+                followed.sum(),
+                skippedScope.sum(),
+                skippedOptional.sum(),
+                skippedExclusions.sum(),
+                parses.snapshot(),
+                fetches.snapshot(),
+                fetchedArtifacts.sum(),
+                artifacts.snapshot(),
+                models.snapshot(),
+                nodes.snapshot(),
+                jarOpens.sum());
+    }
+
+    /**
+     * Reset all statistics to zero.
+     */
+    public static void reset() {
+        materialized.reset();
+        followed.reset();
+        skippedScope.reset();
+        skippedOptional.reset();
+        skippedExclusions.reset();
+        parses.reset();
+        fetches.reset();
+        fetchedArtifacts.reset();
+        artifacts.reset();
+        models.reset();
+        nodes.reset();
+        jarOpens.reset();
+    }
+
+    static void materialized() {
+        materialized.increment();
+    }
+
+    static void followed(final int count) {
+        followed.add(count);
+    }
+
+    static void skippedScope(final int count) {
+        skippedScope.add(count);
+    }
+
+    static void skippedOptional(final int count) {
+        skippedOptional.add(count);
+    }
+
+    static void skippedExclusion() {
+        skippedExclusions.increment();
+    }
+
+    static void parsed(final long nanos) {
+        parses.record(nanos);
+    }
+
+    static void fetched(final int count, final long nanos) {
+        fetches.record(nanos);
+        fetchedArtifacts.add(count);
+    }
+
+    static void artifactLookup(final boolean hit) {
+        artifacts.record(hit);
+    }
+
+    static void modelLookup(final boolean hit) {
+        models.record(hit);
+    }
+
+    static void nodeLookup(final boolean hit) {
+        nodes.record(hit);
+    }
+
+    static void jarOpened() {
+        jarOpens.increment();
+    }
+
+    private MvnStatistics() {
+    }
+}
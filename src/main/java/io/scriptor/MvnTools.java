@@ -1,16 +1,23 @@
 package io.scriptor;
 
-import guru.nidi.graphviz.engine.Format;
-import guru.nidi.graphviz.engine.Graphviz;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Date;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
@@ -24,6 +31,46 @@ public class MvnTools {
     private static final Logger logger = Logger.getLogger("io.scriptor");
     private static final String ID_FORMAT = "%s:%s:%s:%s";
 
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool pool;
+    private static final ThreadLocal<Deque<Runnable>> deferred = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * A pom parsed or being parsed, and the size and modification time it was
+     * parsed at
+     *
+     * @param size     the size of the pom
+     * @param modified the modification time of the pom
+     * @param model    completes with the model, or null if parsing failed
+     * @param used     the tick of the last lookup
+     */
+    private record CachedModel(
+            long size,
+            long modified,
+            @Nonnull CompletableFuture<Model> model,
+            @Nonnull AtomicLong used) {
+    }
+
+    private static final Map<String, CachedModel> models = new ConcurrentHashMap<>();
+    private static final AtomicLong modelTicks = new AtomicLong();
+    private static volatile int modelCacheSize = 256;
+    private static File repository;
+    private static boolean fastParsing = true;
+    private static boolean lazyResolution;
+    private static MvnScope resolutionScope = MvnScope.COMPILE;
+    private static File cacheDirectory;
+    private static boolean graphCaching = true;
+    private static MvnJarPool jarPool = new MvnJarPool(64);
+    private static MvnTransport transport = MvnTools::fetchWithMaven;
+    private static boolean batchFetching = true;
+    private static boolean offline;
+    private static Duration negativeCacheTtl = Duration.ofHours(1);
+    private static boolean verifyingChecksums;
+    private static boolean executableDetected;
+    private static String executable;
+    private static boolean dotExecutableDetected;
+    private static String dotExecutable;
+
     static {
         final var handler = new ConsoleHandler();
         handler.setFormatter(new Formatter() {
@@ -45,36 +92,353 @@ public class MvnTools {
     }
 
     /**
-     * Get the default maven repository for the current user.
+     * Get the local maven repository, by default the one of the current user.
      *
      * @return File pointing to the maven repository
      */
     @Nonnull
-    public static File getRepository() {
+    public static synchronized File getRepository() {
+        if (repository != null)
+            return repository;
+
         final var home = System.getProperty("user.home");
         return new File(home, ".m2" + File.separator + "repository");
     }
 
+    /**
+     * Set the local maven repository. Artifacts resolved against the previous
+     * repository are dropped from all in-memory caches.
+     *
+     * @param repository the repository, or null to use the default one
+     */
+    public static void setRepository(@Nullable final File repository) {
+        synchronized (MvnTools.class) {
+            if (Objects.equals(MvnTools.repository, repository))
+                return;
+            MvnTools.repository = repository;
+        }
+        clearCaches();
+    }
+
+    /**
+     * Drop all in-memory caches, i.e. resolved artifacts, parsed poms, compiled
+     * property templates and available versions. The graph cache on disk is kept,
+     * as it validates its nodes on load.
+     */
+    public static void clearCaches() {
+        MvnArtifact.clearCache();
+        MvnVersionResolver.clearCache();
+        MvnPropertyScope.clearCache();
+        models.clear();
+    }
+
+    /**
+     * Check if artifacts are resolved lazily.
+     *
+     * @return true if lazy resolution is enabled
+     */
+    public static synchronized boolean isLazyResolution() {
+        return lazyResolution;
+    }
+
+    /**
+     * Enable or disable lazy resolution. If enabled, getting an artifact only
+     * reads its own pom, its parent and dependencies are resolved on first access.
+     * Otherwise, the whole dependency graph is resolved up front.
+     *
+     * @param lazyResolution true to enable lazy resolution
+     */
+    public static synchronized void setLazyResolution(final boolean lazyResolution) {
+        MvnTools.lazyResolution = lazyResolution;
+    }
+
+    /**
+     * Get the scope dependencies are resolved in.
+     *
+     * @return the resolution scope
+     */
+    @Nonnull
+    public static synchronized MvnScope getResolutionScope() {
+        return resolutionScope;
+    }
+
+    /**
+     * Set the scope dependencies are resolved in. Defaults to
+     * {@link MvnScope#COMPILE}.
+     *
+     * @param resolutionScope the resolution scope
+     */
+    public static synchronized void setResolutionScope(@Nonnull final MvnScope resolutionScope) {
+        MvnTools.resolutionScope = resolutionScope;
+    }
+
+    /**
+     * Get the directory persistent caches are kept in. Defaults to ".mvntools"
+     * inside the maven repository.
+     *
+     * @return the cache directory
+     */
+    @Nonnull
+    public static synchronized File getCacheDirectory() {
+        return cacheDirectory != null
+                ? cacheDirectory
+                : new File(getRepository(), ".mvntools");
+    }
+
+    /**
+     * Set the directory persistent caches are kept in.
+     *
+     * @param cacheDirectory the cache directory, or null for the default one
+     */
+    public static synchronized void setCacheDirectory(@Nullable final File cacheDirectory) {
+        MvnTools.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Check if resolved artifacts are cached on disk.
+     *
+     * @return true if graph caching is enabled
+     */
+    public static synchronized boolean isGraphCaching() {
+        return graphCaching;
+    }
+
+    /**
+     * Enable or disable caching resolved artifacts on disk. If enabled, artifacts
+     * whose poms did not change are loaded from the cache instead of being parsed
+     * again.
+     *
+     * @param graphCaching true to enable graph caching
+     */
+    public static synchronized void setGraphCaching(final boolean graphCaching) {
+        MvnTools.graphCaching = graphCaching;
+    }
+
+    /**
+     * Get the directory resolved artifacts are cached in.
+     *
+     * @return the graph cache directory, or null if graph caching is disabled
+     */
+    @Nullable
+    static synchronized File getGraphCacheDirectory() {
+        return graphCaching
+                ? new File(getCacheDirectory(), "graph")
+                : null;
+    }
+
+    /**
+     * Get the number of worker threads used to resolve independent subtrees of a
+     * dependency graph.
+     *
+     * @return the parallelism level, 1 meaning serial resolution
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of worker threads used to resolve independent subtrees of a
+     * dependency graph. A level of 1 resolves everything on the calling thread.
+     *
+     * @param parallelism the parallelism level
+     */
+    public static synchronized void setParallelism(final int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        if (MvnTools.parallelism == parallelism)
+            return;
+
+        MvnTools.parallelism = parallelism;
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Get the executor used to materialize dependencies. If the parallelism level
+     * is 1, tasks are deferred on the calling thread until {@link #runDeferred()}
+     * is called.
+     *
+     * @return the resolution executor
+     */
+    @Nonnull
+    static synchronized Executor getExecutor() {
+        if (parallelism == 1)
+            return deferred.get()::add;
+        if (pool == null)
+            pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        return pool;
+    }
+
+    /**
+     * Run all tasks deferred on the calling thread, including the ones scheduled
+     * while running.
+     */
+    static void runDeferred() {
+        final var tasks = deferred.get();
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+            task.run();
+    }
+
+    /**
+     * Get the maximum number of parsed poms kept in memory.
+     *
+     * @return the model cache size
+     */
+    public static int getModelCacheSize() {
+        return modelCacheSize;
+    }
+
+    /**
+     * Set the maximum number of parsed poms kept in memory. The least recently
+     * used ones are dropped first.
+     *
+     * @param modelCacheSize the model cache size, 0 to disable caching
+     */
+    public static void setModelCacheSize(final int modelCacheSize) {
+        if (modelCacheSize < 0)
+            throw new IllegalArgumentException("modelCacheSize must not be negative, got " + modelCacheSize);
+
+        MvnTools.modelCacheSize = modelCacheSize;
+        evictModels();
+    }
+
+    /**
+     * Check if poms are read using the streaming parser.
+     *
+     * @return true if fast parsing is enabled
+     */
+    public static synchronized boolean isFastParsing() {
+        return fastParsing;
+    }
+
+    /**
+     * Enable or disable fast parsing. If enabled, poms are read by a streaming
+     * parser that only extracts coordinates, parent, properties, dependency
+     * management and dependencies, skipping everything else. Poms it cannot read
+     * fall back to the full maven reader.
+     *
+     * @param fastParsing true to enable fast parsing
+     */
+    public static synchronized void setFastParsing(final boolean fastParsing) {
+        MvnTools.fastParsing = fastParsing;
+    }
+
     /**
      * Read in the pom file and convert the output to a pom-like data structure.
+     * Parsed poms are cached by path, size and modification time, and threads
+     * missing the same pom at the same time share a single parse. The returned
+     * model is shared, so it must be treated as read-only.
      *
      * @param pom the pom file
      * @return Model containing the read-in pom
      */
     @Nonnull
     public static Model getModel(@Nonnull final File pom) {
+        final var key = pom.getAbsolutePath();
+        final var size = pom.length();
+        final var modified = pom.lastModified();
+
+        var cached = models.get(key);
+        if (cached == null || cached.size() != size || cached.modified() != modified) {
+            if (modelCacheSize == 0) {
+                MvnStatistics.modelLookup(false);
+                MvnEvents.cacheLookup("model", key, false);
+                return Objects.requireNonNullElseGet(parseModel(pom, key), Model::new);
+            }
+
+            final var entry = new CachedModel(size, modified, new CompletableFuture<>(), new AtomicLong(modelTicks.incrementAndGet()));
+            cached = models.compute(key, (k, current) -> current != null && current.size() == size && current.modified() == modified
+                    ? current
+                    : entry);
+
+            if (cached == entry) {
+                MvnStatistics.modelLookup(false);
+                MvnEvents.cacheLookup("model", key, false);
+                evictModels();
+
+                Model model = null;
+                try {
+                    model = parseModel(pom, key);
+                } finally {
+                    entry.model().complete(model);
+                    if (model == null)
+                        models.remove(key, entry);
+                }
+                return Objects.requireNonNullElseGet(model, Model::new);
+            }
+        }
+
+        cached.used().set(modelTicks.incrementAndGet());
+        MvnStatistics.modelLookup(true);
+        MvnEvents.cacheLookup("model", key, true);
+        return Objects.requireNonNullElseGet(cached.model().join(), Model::new);
+    }
+
+    /**
+     * Drop the least recently used models once the cache exceeds its size. An
+     * eighth more than necessary is dropped, so sorting the entries is amortized
+     * over the following misses. Models still being parsed are only dropped from
+     * the cache, their parse completes.
+     */
+    private static void evictModels() {
+        final var size = modelCacheSize;
+        final var excess = models.size() - size;
+        if (excess <= 0)
+            return;
+
+        models.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().used().get()))
+                .limit(excess + size / 8)
+                .toList()
+                .forEach(entry -> models.remove(entry.getKey(), entry.getValue()));
+    }
+
+    @Nullable
+    private static Model parseModel(@Nonnull final File pom, @Nonnull final String key) {
+        final var event = new MvnEvents.PomParse();
+        event.begin();
+        final var start = System.nanoTime();
+        final var model = readModel(pom);
+        MvnStatistics.parsed(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.pom = key;
+            event.fast = isFastParsing();
+            event.success = model != null;
+            event.commit();
+        }
+        return model;
+    }
+
+    @Nullable
+    private static Model readModel(@Nonnull final File pom) {
+        if (isFastParsing())
+            try {
+                return MvnPomParser.parse(pom);
+            } catch (final XMLStreamException e) {
+                getLogger().fine(() -> "Falling back to full parser for %s: %s".formatted(pom, e));
+            } catch (final IOException e) {
+                getLogger().warning(() -> "Failed to get model for %s: %s".formatted(pom, e));
+                return null;
+            }
+
         final var reader = new MavenXpp3Reader();
         reader.setAddDefaultEntities(true);
-        try {
-            return reader.read(new FileReader(pom));
+        try (final var stream = new BufferedInputStream(new FileInputStream(pom))) {
+            return reader.read(stream);
         } catch (final XmlPullParserException | IOException e) {
             getLogger().warning(() -> "Failed to get model for %s: %s".formatted(pom, e));
-            return new Model();
+            return null;
         }
     }
 
     /**
      * Read in the pom file and convert the output to a pom-like data structure.
+     * The returned model is shared, so it must be treated as read-only.
      *
      * @param groupId    the group id
      * @param artifactId the artifact id
@@ -83,6 +447,19 @@ public class MvnTools {
      */
     @Nonnull
     public static Model getModel(@Nonnull final String groupId, @Nonnull final String artifactId, @Nonnull final String version) {
+        return getModel(getPomFile(groupId, artifactId, version));
+    }
+
+    /**
+     * Get the location of an artifacts pom file inside the local repository.
+     *
+     * @param groupId    the group id
+     * @param artifactId the artifact id
+     * @param version    the version
+     * @return the pom file, which may not exist
+     */
+    @Nonnull
+    public static File getPomFile(@Nonnull final String groupId, @Nonnull final String artifactId, @Nonnull final String version) {
         final var prefix = String.format(
                 "%2$s%1$c%3$s%1$c%4$s%1$c%3$s-%4$s",
                 File.separatorChar,
@@ -90,8 +467,246 @@ public class MvnTools {
                 artifactId,
                 version);
 
-        final var pom = new File(getRepository(), prefix + ".pom");
-        return getModel(pom);
+        return new File(getRepository(), prefix + ".pom");
+    }
+
+    /**
+     * Get the file extension of a packaging type. Packagings like bundle or
+     * maven-plugin are packaged as plain jars.
+     *
+     * @param packaging the packaging
+     * @return the file extension
+     */
+    @Nonnull
+    static String getExtension(@Nonnull final String packaging) {
+        return switch (packaging) {
+            case "bundle", "maven-plugin", "ejb", "eclipse-plugin", "hk2-jar", "orbit" -> "jar";
+            default -> packaging;
+        };
+    }
+
+    /**
+     * Check if a version string is a version range, e.g. "[1.0,2.0)" or "[1.5]".
+     *
+     * @param version the version
+     * @return true if the version is a range
+     */
+    static boolean isVersionRange(@Nonnull final String version) {
+        return MvnVersionRange.isRange(version);
+    }
+
+    /**
+     * Check if missing artifacts get fetched in batches.
+     *
+     * @return true if batch fetching is enabled
+     */
+    public static synchronized boolean isBatchFetching() {
+        return batchFetching;
+    }
+
+    /**
+     * Enable or disable batch fetching. If enabled, all artifacts requested while
+     * a fetch is running get collected and fetched using a single maven
+     * invocation, otherwise every artifact is fetched on its own.
+     *
+     * @param batchFetching true to enable batch fetching
+     */
+    public static synchronized void setBatchFetching(final boolean batchFetching) {
+        MvnTools.batchFetching = batchFetching;
+    }
+
+    /**
+     * Check if offline mode is enabled.
+     *
+     * @return true if nothing is ever fetched
+     */
+    public static synchronized boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Enable or disable offline mode. If enabled, missing artifacts are never
+     * fetched: no process is started and no connection is opened, and the
+     * artifacts are treated like failed fetches.
+     *
+     * @param offline true to enable offline mode
+     */
+    public static synchronized void setOffline(final boolean offline) {
+        MvnTools.offline = offline;
+    }
+
+    /**
+     * Get how long failed fetches are remembered.
+     *
+     * @return the negative cache ttl
+     */
+    @Nonnull
+    public static synchronized Duration getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    /**
+     * Set how long failed fetches are remembered, across processes. Until the ttl
+     * expires, an artifact that failed to fetch is not requested again. Defaults
+     * to one hour.
+     *
+     * @param negativeCacheTtl the ttl, or zero to always fetch again
+     */
+    public static synchronized void setNegativeCacheTtl(@Nonnull final Duration negativeCacheTtl) {
+        MvnTools.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    /**
+     * Forget all failed fetches, so the next request of any missing artifact
+     * fetches it again.
+     */
+    public static void clearNegativeCache() {
+        MvnNegativeCache.clear();
+    }
+
+    /**
+     * Check if poms and packages are verified before they are used.
+     *
+     * @return true if checksum verification is enabled
+     */
+    public static synchronized boolean isVerifyingChecksums() {
+        return verifyingChecksums;
+    }
+
+    /**
+     * Enable or disable checksum verification. If enabled, every pom and package
+     * is verified against its checksum file before it is used, and fetched again
+     * if it does not match, e.g. because an earlier fetch was interrupted.
+     * Verified digests are remembered, so unchanged files are only hashed once.
+     *
+     * @param verifyingChecksums true to enable checksum verification
+     */
+    public static synchronized void setVerifyingChecksums(final boolean verifyingChecksums) {
+        MvnTools.verifyingChecksums = verifyingChecksums;
+    }
+
+    /**
+     * Get the maven executable found on the path. The lookup is done only once per
+     * process.
+     *
+     * @return the maven executable, or null if there is none
+     */
+    @Nullable
+    static synchronized String getExecutable() {
+        if (executableDetected)
+            return executable;
+        executableDetected = true;
+
+        final var path = Objects.requireNonNullElse(System.getenv("PATH"), "");
+        for (final var name : new String[]{"mvn", "mvn.cmd"})
+            for (final var dir : path.split(File.pathSeparator))
+                if (!dir.isEmpty() && new File(dir, name).canExecute()) {
+                    executable = name;
+                    return executable;
+                }
+
+        getLogger().warning("no suitable maven executable found");
+        return null;
+    }
+
+    /**
+     * Set the maven executable, e.g. a wrapper script.
+     *
+     * @param executable the executable, or null to look it up on the path again
+     */
+    static synchronized void setExecutable(@Nullable final String executable) {
+        MvnTools.executable = executable;
+        MvnTools.executableDetected = executable != null;
+    }
+
+    /**
+     * Get the graphviz dot executable found on the path. The lookup is done only
+     * once per process.
+     *
+     * @return the dot executable, or null if there is none
+     */
+    @Nullable
+    static synchronized String getDotExecutable() {
+        if (dotExecutableDetected)
+            return dotExecutable;
+        dotExecutableDetected = true;
+
+        final var path = Objects.requireNonNullElse(System.getenv("PATH"), "");
+        for (final var name : new String[]{"dot", "dot.exe"})
+            for (final var dir : path.split(File.pathSeparator))
+                if (!dir.isEmpty() && new File(dir, name).canExecute()) {
+                    dotExecutable = name;
+                    return dotExecutable;
+                }
+
+        getLogger().fine("no dot executable found, using the bundled graphviz engine");
+        return null;
+    }
+
+    /**
+     * Set the graphviz dot executable, e.g. a wrapper script.
+     *
+     * @param dotExecutable the executable, or null to look it up on the path again
+     */
+    static synchronized void setDotExecutable(@Nullable final String dotExecutable) {
+        MvnTools.dotExecutable = dotExecutable;
+        MvnTools.dotExecutableDetected = dotExecutable != null;
+    }
+
+    /**
+     * Get the pool of open jar files shared by all package access methods.
+     *
+     * @return the jar pool
+     */
+    @Nonnull
+    public static synchronized MvnJarPool getJarPool() {
+        return jarPool;
+    }
+
+    /**
+     * Replace the pool of open jar files. The previous pool gets closed, jars
+     * still leased from it stay open until their leases are closed.
+     *
+     * @param jarPool the new jar pool
+     */
+    public static synchronized void setJarPool(@Nonnull final MvnJarPool jarPool) {
+        if (MvnTools.jarPool == jarPool)
+            return;
+        MvnTools.jarPool.close();
+        MvnTools.jarPool = jarPool;
+    }
+
+    /**
+     * Get the transport used to fetch remote artifacts.
+     *
+     * @return the transport
+     */
+    @Nonnull
+    public static synchronized MvnTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Set the transport used to fetch remote artifacts, e.g. a
+     * {@link MvnHttpTransport}. The previous transport gets closed, if it is
+     * closeable.
+     *
+     * @param transport the transport, or null to fetch using maven
+     */
+    public static synchronized void setTransport(@Nullable final MvnTransport transport) {
+        if (MvnTools.transport == transport)
+            return;
+
+        if (MvnTools.transport instanceof AutoCloseable closeable)
+            try {
+                closeable.close();
+            } catch (final Exception e) {
+                getLogger().warning(() -> "Failed to close transport: %s".formatted(e));
+            }
+
+        MvnTools.transport = transport != null
+                ? transport
+                : MvnTools::fetchWithMaven;
     }
 
     /**
@@ -110,30 +725,100 @@ public class MvnTools {
             @Nonnull final String version,
             final boolean transitive) {
 
+        return fetchArtifacts(List.of(ID_FORMAT.formatted(groupId, artifactId, packaging, version)), transitive);
+    }
+
+    /**
+     * Fetch a list of remote maven artifacts into the local repository, using the
+     * current transport. Artifacts that failed to fetch recently are skipped, and
+     * nothing is fetched in offline mode.
+     *
+     * @param ids        the artifact ids (groupId:artifactId:packaging:version)
+     * @param transitive if not only the artifacts poms are required
+     * @return true if all artifacts were fetched
+     */
+    public static boolean fetchArtifacts(@Nonnull final Collection<String> ids, final boolean transitive) {
+        if (ids.isEmpty())
+            return true;
+
+        if (isOffline()) {
+            getLogger().info(() -> "Offline, not fetching %s".formatted(String.join(", ", ids)));
+            return false;
+        }
+
+        final var pending = ids.stream()
+                .filter(id -> !MvnNegativeCache.isFailed(id, transitive))
+                .toList();
+        if (pending.size() < ids.size())
+            getLogger().info(() -> "Skipping %d recently failed fetches".formatted(ids.size() - pending.size()));
+        if (pending.isEmpty())
+            return false;
+
+        final var event = new MvnEvents.Fetch();
+        event.begin();
+        final var start = System.nanoTime();
+        final var success = getTransport().fetch(pending, transitive);
+        MvnStatistics.fetched(pending.size(), System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.ids = String.join(",", pending);
+            event.count = pending.size();
+            event.transitive = transitive;
+            event.success = success;
+            event.commit();
+        }
+
+        MvnNegativeCache.recordFailures(pending, transitive, success);
+        return success && pending.size() == ids.size();
+    }
+
+    /**
+     * Fetch a list of remote maven artifacts into the local repository using
+     * maven. If batch fetching is enabled, they are fetched using a single maven
+     * invocation, together with all other artifacts requested at the same time.
+     *
+     * @param ids        the artifact ids (groupId:artifactId:packaging:version)
+     * @param transitive if not only the artifacts poms are required
+     * @return true if all artifacts were fetched
+     */
+    private static boolean fetchWithMaven(@Nonnull final Collection<String> ids, final boolean transitive) {
+        if (isBatchFetching())
+            return MvnBatchFetcher.fetch(ids, transitive);
+
+        var success = true;
+        for (final var id : ids) {
+            final var params = id.split(":");
+            success &= fetchArtifactDirect(params[0], params[1], params[2], params[3], transitive);
+        }
+        return success;
+    }
+
+    /**
+     * Fetch a single remote maven artifact into the local repository, using its
+     * own maven invocation.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @param packaging  the packaging
+     * @param version    the version
+     * @param transitive if not only the artifacts pom is required
+     * @return true if the artifact was fetched
+     */
+    static boolean fetchArtifactDirect(
+            @Nonnull final String groupId,
+            @Nonnull final String artifactId,
+            @Nonnull final String packaging,
+            @Nonnull final String version,
+            final boolean transitive) {
+
         final var fullId = ID_FORMAT.formatted(groupId, artifactId, packaging, version);
         getLogger().info(() -> "Fetching artifact %s".formatted(fullId));
 
         final var cwd = new File(".");
 
-        String exec;
-        try {
-            Runtime.getRuntime().exec("mvn", null, cwd).waitFor();
-            exec = "mvn";
-        } catch (final IOException a) {
-            try {
-                Runtime.getRuntime().exec("mvn.cmd", null, cwd).waitFor();
-                exec = "mvn.cmd";
-            } catch (final IOException b) {
-                getLogger().warning("no suitable maven executable found");
-                return false;
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return false;
-            }
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
+        final var exec = getExecutable();
+        if (exec == null)
             return false;
-        }
 
         final var procBuilder = new ProcessBuilder(
                 exec,
@@ -166,17 +851,36 @@ public class MvnTools {
     }
 
     /**
-     * Generate, render and export a GraphViz graph for the given artifact into a
-     * file.
+     * Generate, render and export a GraphViz graph for the given artifact into an
+     * svg file.
      *
      * @param artifact the artifact
      * @param file     the output file
      * @throws IOException if any
      */
     public static void renderGraph(@Nonnull final MvnArtifact artifact, @Nonnull final File file) throws IOException {
-        Graphviz.fromGraph(artifact.generateGraph())
-                .render(Format.SVG)
-                .toFile(file);
+        renderGraph(artifact, file, MvnGraphFormat.SVG);
+    }
+
+    /**
+     * Generate, render and export a GraphViz graph for the given artifact into a
+     * file. The graph is laid out by a local dot executable if there is one, with
+     * a force directed layout for large graphs. Rendered graphs are cached in the
+     * cache directory, so rendering an unchanged graph again only copies the
+     * cached file.
+     *
+     * @param artifact the artifact
+     * @param file     the output file
+     * @param format   the output format
+     * @throws IOException if any
+     */
+    public static void renderGraph(
+            @Nonnull final MvnArtifact artifact,
+            @Nonnull final File file,
+            @Nonnull final MvnGraphFormat format) throws IOException {
+        final var dot = new StringBuilder();
+        final var nodes = artifact.writeGraph(dot, false, Integer.MAX_VALUE);
+        MvnRenderer.render(dot.toString(), nodes, format, file);
     }
 
     private MvnTools() {
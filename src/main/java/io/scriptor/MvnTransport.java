@@ -0,0 +1,20 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+
+/**
+ * Strategy for fetching remote artifacts into the local repository
+ */
+@FunctionalInterface
+public interface MvnTransport {
+
+    /**
+     * Fetch a list of remote artifacts into the local repository.
+     *
+     * @param ids        the artifact ids (groupId:artifactId:packaging:version)
+     * @param transitive if not only the artifacts poms are required
+     * @return true if all artifacts were fetched
+     */
+    boolean fetch(@Nonnull Collection<String> ids, boolean transitive);
+}
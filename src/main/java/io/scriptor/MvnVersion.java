@@ -0,0 +1,291 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A version, ordered by the rules maven uses to compare versions: numeric parts
+ * compare as numbers ("1.10" is above "1.9"), trailing zeros are ignored ("1.0"
+ * equals "1") and well known qualifiers are ordered alpha &lt; beta &lt;
+ * milestone &lt; rc &lt; snapshot &lt; release &lt; sp, with unknown qualifiers
+ * after all of them in lexical order.
+ */
+public final class MvnVersion implements Comparable<MvnVersion> {
+
+    private static final List<String> QUALIFIERS = List.of("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final Map<String, String> ALIASES = Map.of("ga", "", "final", "", "release", "", "cr", "rc");
+    private static final String RELEASE = String.valueOf(QUALIFIERS.indexOf(""));
+
+    /**
+     * A single part of a version
+     */
+    private sealed interface Item permits IntItem, StringItem, ListItem {
+
+        /**
+         * Compare with another item, or with a missing item if null.
+         */
+        int compareTo(Item item);
+
+        boolean isNull();
+    }
+
+    /**
+     * A numeric part, kept as its digits without leading zeros, so it compares
+     * correctly no matter how many digits it has
+     */
+    private record IntItem(@Nonnull String digits) implements Item {
+
+        private static IntItem of(@Nonnull final String value) {
+            int start = 0;
+            while (start < value.length() - 1 && value.charAt(start) == '0')
+                ++start;
+            return new IntItem(value.substring(start));
+        }
+
+        @Override
+        public int compareTo(final Item item) {
+            if (item == null)
+                return isNull() ? 0 : 1;
+            if (item instanceof IntItem other) {
+                if (digits.length() != other.digits.length())
+                    return Integer.compare(digits.length(), other.digits.length());
+                return Integer.signum(digits.compareTo(other.digits));
+            }
+            // 1.1 > 1-sp, 1.1 > 1-1
+            return 1;
+        }
+
+        @Override
+        public boolean isNull() {
+            return "0".equals(digits);
+        }
+
+        @Override
+        public String toString() {
+            return digits;
+        }
+    }
+
+    /**
+     * A qualifier part
+     */
+    private record StringItem(@Nonnull String value) implements Item {
+
+        private static StringItem of(@Nonnull String value, final boolean followedByDigit) {
+            if (followedByDigit && value.length() == 1) {
+                // a1 = alpha-1, b1 = beta-1, m1 = milestone-1
+                switch (value.charAt(0)) {
+                    case 'a' -> value = "alpha";
+                    case 'b' -> value = "beta";
+                    case 'm' -> value = "milestone";
+                    default -> {
+                    }
+                }
+            }
+            return new StringItem(ALIASES.getOrDefault(value, value));
+        }
+
+        /**
+         * Map a qualifier to a string that orders like the qualifier does.
+         */
+        private static String comparable(@Nonnull final String qualifier) {
+            final var index = QUALIFIERS.indexOf(qualifier);
+            return index < 0
+                    ? QUALIFIERS.size() + "-" + qualifier
+                    : String.valueOf(index);
+        }
+
+        @Override
+        public int compareTo(final Item item) {
+            if (item == null)
+                return Integer.signum(comparable(value).compareTo(RELEASE));
+            if (item instanceof StringItem other)
+                return Integer.signum(comparable(value).compareTo(comparable(other.value)));
+            // 1.any < 1.1, 1-any < 1-1
+            return -1;
+        }
+
+        @Override
+        public boolean isNull() {
+            return comparable(value).equals(RELEASE);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /**
+     * A sub-list of parts, started by a '-' or a change between digits and letters
+     */
+    private static final class ListItem extends ArrayList<Item> implements Item {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Remove trailing null items, e.g. "1.0.0" becomes "1".
+         */
+        private void normalize() {
+            for (int i = size() - 1; i >= 0; --i) {
+                final var item = get(i);
+                if (item.isNull())
+                    remove(i);
+                else if (!(item instanceof ListItem))
+                    break;
+            }
+        }
+
+        @Override
+        public int compareTo(final Item item) {
+            if (item == null) {
+                // 1-0 = 1- (normalize) = 1
+                return isEmpty() ? 0 : get(0).compareTo(null);
+            }
+            if (item instanceof IntItem)
+                return -1;
+            if (item instanceof StringItem)
+                return 1;
+
+            final Iterator<Item> left = iterator();
+            final Iterator<Item> right = ((ListItem) item).iterator();
+            while (left.hasNext() || right.hasNext()) {
+                final var l = left.hasNext() ? left.next() : null;
+                final var r = right.hasNext() ? right.next() : null;
+                final int result = l == null
+                        ? (r == null ? 0 : -r.compareTo(null))
+                        : l.compareTo(r);
+                if (result != 0)
+                    return result;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean isNull() {
+            return isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            final var builder = new StringBuilder();
+            for (final var item : this) {
+                if (!builder.isEmpty())
+                    builder.append(item instanceof ListItem ? '-' : '.');
+                builder.append(item);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Parse a version.
+     *
+     * @param version the version string
+     * @return the version
+     */
+    @Nonnull
+    public static MvnVersion parse(@Nonnull final String version) {
+        return new MvnVersion(version);
+    }
+
+    private final String mVersion;
+    private final ListItem mItems;
+    private final String mCanonical;
+
+    private MvnVersion(@Nonnull final String version) {
+        mVersion = version;
+        mItems = new ListItem();
+
+        final var value = version.toLowerCase(Locale.ENGLISH);
+        final Deque<ListItem> stack = new ArrayDeque<>();
+        stack.push(mItems);
+
+        var list = mItems;
+        var isDigit = false;
+        int start = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            final var c = value.charAt(i);
+            if (c == '.') {
+                list.add(i == start ? IntItem.of("0") : parseItem(value.substring(start, i), isDigit));
+                start = i + 1;
+            } else if (c == '-') {
+                list.add(i == start ? IntItem.of("0") : parseItem(value.substring(start, i), isDigit));
+                start = i + 1;
+                list.add(list = new ListItem());
+                stack.push(list);
+            } else if (Character.isDigit(c)) {
+                if (!isDigit && i > start) {
+                    list.add(StringItem.of(value.substring(start, i), true));
+                    start = i;
+                    list.add(list = new ListItem());
+                    stack.push(list);
+                }
+                isDigit = true;
+            } else {
+                if (isDigit && i > start) {
+                    list.add(IntItem.of(value.substring(start, i)));
+                    start = i;
+                    list.add(list = new ListItem());
+                    stack.push(list);
+                }
+                isDigit = false;
+            }
+        }
+        if (value.length() > start)
+            list.add(parseItem(value.substring(start), isDigit));
+
+        while (!stack.isEmpty())
+            stack.pop().normalize();
+
+        mCanonical = mItems.toString();
+    }
+
+    @Nonnull
+    private static Item parseItem(@Nonnull final String value, final boolean isDigit) {
+        return isDigit
+                ? IntItem.of(value)
+                : StringItem.of(value, false);
+    }
+
+    /**
+     * Check if this is a snapshot version.
+     *
+     * @return true if the version ends with "-SNAPSHOT"
+     */
+    public boolean isSnapshot() {
+        return mVersion.endsWith("-SNAPSHOT");
+    }
+
+    @Override
+    public int compareTo(@Nonnull final MvnVersion other) {
+        return mItems.compareTo(other.mItems);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof MvnVersion other && mCanonical.equals(other.mCanonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return mCanonical.hashCode();
+    }
+
+    /**
+     * Get the version as it was parsed.
+     *
+     * @return the version string
+     */
+    @Override
+    @Nonnull
+    public String toString() {
+        return mVersion;
+    }
+}
@@ -0,0 +1,176 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A maven version range, e.g. "[1.0,2.0)", "(,1.0]", "[1.5]" or a union like
+ * "[1.0,2.0),[3.0,)".
+ */
+public final class MvnVersionRange {
+
+    /**
+     * A single interval of a range
+     *
+     * @param lower          the lower bound, or null if unbounded
+     * @param lowerInclusive if the lower bound is included
+     * @param upper          the upper bound, or null if unbounded
+     * @param upperInclusive if the upper bound is included
+     */
+    public record Restriction(
+            @Nullable MvnVersion lower,
+            boolean lowerInclusive,
+            @Nullable MvnVersion upper,
+            boolean upperInclusive) {
+
+        public boolean contains(@Nonnull final MvnVersion version) {
+            if (lower != null) {
+                final var comparison = lower.compareTo(version);
+                if (comparison > 0 || (comparison == 0 && !lowerInclusive))
+                    return false;
+            }
+            if (upper != null) {
+                final var comparison = upper.compareTo(version);
+                return comparison > 0 || (comparison == 0 && upperInclusive);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Check if a version specification is a range, i.e. starts with '[' or '('.
+     *
+     * @param spec the version specification
+     * @return true if it is a range
+     */
+    public static boolean isRange(@Nullable final String spec) {
+        return spec != null && !spec.isEmpty() && (spec.charAt(0) == '[' || spec.charAt(0) == '(');
+    }
+
+    /**
+     * Parse a version range.
+     *
+     * @param spec the range specification
+     * @return the range
+     * @throws IllegalArgumentException if the specification is not a valid range
+     */
+    @Nonnull
+    public static MvnVersionRange parse(@Nonnull final String spec) {
+        final List<Restriction> restrictions = new ArrayList<>();
+
+        var rest = spec.trim();
+        while (!rest.isEmpty()) {
+            if (!isRange(rest))
+                throw new IllegalArgumentException("Invalid version range '%s'".formatted(spec));
+
+            final var close = indexOfClose(rest);
+            if (close < 0)
+                throw new IllegalArgumentException("Unbounded version range '%s'".formatted(spec));
+
+            restrictions.add(parseRestriction(spec, rest.substring(0, close + 1)));
+
+            rest = rest.substring(close + 1).trim();
+            if (rest.startsWith(","))
+                rest = rest.substring(1).trim();
+        }
+
+        if (restrictions.isEmpty())
+            throw new IllegalArgumentException("Empty version range '%s'".formatted(spec));
+
+        return new MvnVersionRange(spec, restrictions);
+    }
+
+    private static int indexOfClose(@Nonnull final String value) {
+        final var square = value.indexOf(']');
+        final var round = value.indexOf(')');
+        if (square < 0)
+            return round;
+        if (round < 0)
+            return square;
+        return Math.min(square, round);
+    }
+
+    @Nonnull
+    private static Restriction parseRestriction(@Nonnull final String spec, @Nonnull final String range) {
+        final var lowerInclusive = range.charAt(0) == '[';
+        final var upperInclusive = range.charAt(range.length() - 1) == ']';
+        final var body = range.substring(1, range.length() - 1).trim();
+
+        final var comma = body.indexOf(',');
+        if (comma < 0) {
+            // a single version must be matched exactly
+            if (!lowerInclusive || !upperInclusive || body.isEmpty())
+                throw new IllegalArgumentException("Invalid version range '%s'".formatted(spec));
+
+            final var version = MvnVersion.parse(body);
+            return new Restriction(version, true, version, true);
+        }
+
+        final var lower = body.substring(0, comma).trim();
+        final var upper = body.substring(comma + 1).trim();
+        if (upper.contains(","))
+            throw new IllegalArgumentException("Invalid version range '%s'".formatted(spec));
+
+        final var restriction = new Restriction(
+                lower.isEmpty() ? null : MvnVersion.parse(lower),
+                lowerInclusive,
+                upper.isEmpty() ? null : MvnVersion.parse(upper),
+                upperInclusive);
+        if (restriction.lower() != null
+                && restriction.upper() != null
+                && restriction.lower().compareTo(restriction.upper()) > 0)
+            throw new IllegalArgumentException("Inverted version range '%s'".formatted(spec));
+        return restriction;
+    }
+
+    private final String mSpec;
+    private final List<Restriction> mRestrictions;
+
+    private MvnVersionRange(@Nonnull final String spec, @Nonnull final List<Restriction> restrictions) {
+        mSpec = spec;
+        mRestrictions = restrictions;
+    }
+
+    @Nonnull
+    public List<Restriction> getRestrictions() {
+        return Collections.unmodifiableList(mRestrictions);
+    }
+
+    /**
+     * Check if a version lies within this range.
+     *
+     * @param version the version
+     * @return true if any restriction contains the version
+     */
+    public boolean contains(@Nonnull final MvnVersion version) {
+        for (final var restriction : mRestrictions)
+            if (restriction.contains(version))
+                return true;
+        return false;
+    }
+
+    /**
+     * Select the highest version within this range.
+     *
+     * @param versions the available versions
+     * @return the highest matching version, or null if none matches
+     */
+    @Nullable
+    public MvnVersion select(@Nonnull final Collection<MvnVersion> versions) {
+        MvnVersion selected = null;
+        for (final var version : versions)
+            if (contains(version) && (selected == null || version.compareTo(selected) > 0))
+                selected = version;
+        return selected;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return mSpec;
+    }
+}
@@ -0,0 +1,247 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves version ranges against the versions available in the local
+ * repository. The available versions of an artifact are read from all of its
+ * maven-metadata*.xml files, plus every version directory that contains a pom,
+ * and cached until one of these files or the artifact directory changes.
+ * Resolved ranges are memoized per groupId:artifactId:range, so a range that is
+ * used all over a graph is only resolved once.
+ * <p>
+ * Ranges are resolved local first: remote metadata is only fetched if no local
+ * version matches, so newer remote versions are not seen as long as a local one
+ * satisfies the range. Ranges that match nothing are remembered, like failed
+ * fetches in the negative cache, until the available versions change or the
+ * negative cache ttl expires.
+ */
+final class MvnVersionResolver {
+
+    private static final XMLInputFactory factory = XMLInputFactory.newFactory();
+
+    static {
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Available versions of an artifact
+     *
+     * @param stamps   stamps of the artifact directory and all metadata files
+     * @param versions the versions
+     */
+    private record Versions(@Nonnull List<MvnNodeCache.Stamp> stamps, @Nonnull List<MvnVersion> versions) {
+    }
+
+    /**
+     * A range that matched no version
+     *
+     * @param time   the time of the failed resolution
+     * @param stamps stamps of the artifact directory and all metadata files at
+     *               that time
+     */
+    private record Failure(long time, @Nonnull List<MvnNodeCache.Stamp> stamps) {
+
+        boolean isValid() {
+            return System.currentTimeMillis() - time < MvnTools.getNegativeCacheTtl().toMillis()
+                    && stamps.stream().allMatch(MvnNodeCache.Stamp::isValid);
+        }
+    }
+
+    /**
+     * Resolved versions, indexed by the groupId:artifactId:range coordinate
+     */
+    private static final Map<MvnCoordinate, String> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Ranges that matched no version, indexed by the groupId:artifactId:range
+     * coordinate
+     */
+    private static final Map<MvnCoordinate, Failure> failed = new ConcurrentHashMap<>();
+
+    /**
+     * Available versions, indexed by the groupId:artifactId coordinate without a
+     * version
+     */
+    private static final Map<MvnCoordinate, Versions> available = new ConcurrentHashMap<>();
+
+    /**
+     * Resolve a version range to the highest available version within it. If no
+     * local version matches, the range is fetched once and resolved again. A
+     * range that matches nothing is not resolved again until the available
+     * versions of its artifact change.
+     *
+     * @param range     the coordinate with the range as its version
+     * @param packaging the packaging
+     * @return the resolved version, or null if no version matches
+     */
+    @Nullable
+    static String resolve(@Nonnull final MvnCoordinate range, @Nonnull final String packaging) {
+        final var memo = resolved.get(range);
+        if (memo != null)
+            return memo;
+
+        final var failure = failed.get(range);
+        if (failure != null) {
+            if (failure.isValid())
+                return null;
+            failed.remove(range, failure);
+        }
+
+        final MvnVersionRange parsed;
+        try {
+            parsed = MvnVersionRange.parse(range.getVersion());
+        } catch (final IllegalArgumentException e) {
+            MvnTools.getLogger().warning(() -> "Failed to resolve %s: %s".formatted(range, e.getMessage()));
+            return null;
+        }
+
+        final var groupId = range.getGroupId();
+        final var artifactId = range.getArtifactId();
+
+        var selected = parsed.select(getVersions(groupId, artifactId));
+        if (selected == null && MvnTools.fetchArtifact(groupId, artifactId, packaging, range.getVersion(), true)) {
+            // the fetch may have brought new metadata or versions
+            available.remove(MvnCoordinate.of(groupId, artifactId, null));
+            selected = parsed.select(getVersions(groupId, artifactId));
+        }
+        if (selected == null) {
+            failed.put(range, new Failure(System.currentTimeMillis(), getStamps(groupId, artifactId)));
+            return null;
+        }
+
+        final var version = selected.toString();
+        resolved.put(range, version);
+        return version;
+    }
+
+    /**
+     * Forget a resolved range and the available versions of its artifact, e.g.
+     * because its metadata changed.
+     *
+     * @param range the coordinate with the range as its version
+     */
+    static void forget(@Nonnull final MvnCoordinate range) {
+        resolved.remove(range);
+        failed.remove(range);
+        available.remove(MvnCoordinate.of(range.getGroupId(), range.getArtifactId(), null));
+    }
+
+    /**
+     * Get the stamps of the files the available versions of an artifact were read
+     * from.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @return the stamps, or an empty list if the versions were never read
+     */
+    @Nonnull
+    static List<MvnNodeCache.Stamp> getStamps(@Nonnull final String groupId, @Nonnull final String artifactId) {
+        final var key = MvnCoordinate.find(groupId, artifactId, null);
+        final var versions = key != null ? available.get(key) : null;
+        return versions != null
+                ? versions.stamps()
+                : List.of();
+    }
+
+    /**
+     * Drop all resolved and failed ranges and available versions.
+     */
+    static void clearCache() {
+        resolved.clear();
+        failed.clear();
+        available.clear();
+    }
+
+    /**
+     * Get all versions of an artifact available in the local repository.
+     *
+     * @param groupId    the groupId
+     * @param artifactId the artifactId
+     * @return the available versions, in no particular order
+     */
+    @Nonnull
+    static List<MvnVersion> getVersions(@Nonnull final String groupId, @Nonnull final String artifactId) {
+        final var key = MvnCoordinate.of(groupId, artifactId, null);
+        final var cached = available.get(key);
+        if (cached != null && cached.stamps().stream().allMatch(MvnNodeCache.Stamp::isValid))
+            return cached.versions();
+
+        final var root = new File(
+                MvnTools.getRepository(),
+                groupId.replace('.', File.separatorChar) + File.separatorChar + artifactId);
+
+        final List<MvnNodeCache.Stamp> stamps = new ArrayList<>();
+        final Set<String> names = new LinkedHashSet<>();
+        stamps.add(MvnNodeCache.Stamp.of(root));
+
+        final var files = root.listFiles();
+        if (files != null)
+            for (final var file : files) {
+                final var name = file.getName();
+                if (name.startsWith("maven-metadata") && name.endsWith(".xml")) {
+                    stamps.add(MvnNodeCache.Stamp.of(file));
+                    names.addAll(readMetadata(file));
+                } else if (file.isDirectory() && new File(file, artifactId + '-' + name + ".pom").exists()) {
+                    names.add(name);
+                }
+            }
+
+        final var versions = names.stream()
+                .map(MvnVersion::parse)
+                .toList();
+        available.put(key, new Versions(stamps, versions));
+        return versions;
+    }
+
+    /**
+     * Read the versions listed in a maven-metadata.xml file.
+     *
+     * @param file the metadata file
+     * @return the versions, or an empty list if the file could not be read
+     */
+    @Nonnull
+    static List<String> readMetadata(@Nonnull final File file) {
+        final List<String> versions = new ArrayList<>();
+        try (final var stream = new BufferedInputStream(new FileInputStream(file))) {
+            final var reader = factory.createXMLStreamReader(stream);
+            try {
+                // versions are listed in metadata/versioning/versions/version
+                final Deque<String> path = new ArrayDeque<>();
+                while (reader.hasNext()) {
+                    final var event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final var name = reader.getLocalName();
+                        if ("version".equals(name) && "versions".equals(path.peek()) && path.size() == 3) {
+                            versions.add(reader.getElementText().trim());
+                            continue;
+                        }
+                        path.push(name);
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        path.pop();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException | XMLStreamException e) {
+            MvnTools.getLogger().warning(() -> "Failed to read metadata %s: %s".formatted(file, e));
+        }
+        return versions;
+    }
+
+    private MvnVersionResolver() {
+    }
+}
@@ -0,0 +1,206 @@
+package io.scriptor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps resolved graphs up to date while poms change on disk. While a watcher
+ * is open, every materialized artifact remembers the poms and metadata files it
+ * was derived from, so a poll only compares their sizes and modification times. Changed files invalidate
+ * the artifacts derived from them plus all of their dependents, the watched
+ * roots are resolved again, and everything else is reused from the cache.
+ * <p>
+ * Files are polled instead of watched using a {@link java.nio.file.WatchService},
+ * as the tracked poms are spread over one directory per artifact throughout the
+ * repository, and polling a few thousand files takes a few milliseconds. Poll
+ * explicitly using {@link #poll()} right after editing a pom, or periodically
+ * using {@link #start(Duration)}.
+ */
+public final class MvnWatcher implements AutoCloseable {
+
+    /**
+     * A change detected by a poll
+     *
+     * @param files       the paths of the changed files
+     * @param invalidated the coordinates of all invalidated artifacts
+     * @param roots       the roots after resolving them again, in the order they
+     *                    were added
+     */
+    public record Change(
+            @Nonnull Set<String> files,
+            @Nonnull Set<MvnCoordinate> invalidated,
+            @Nonnull List<MvnArtifact> roots) {
+    }
+
+    private final List<MvnArtifact> mRoots = new ArrayList<>();
+    private final Map<String, MvnNodeCache.Stamp> mFiles = new LinkedHashMap<>();
+    private final List<Consumer<Change>> mListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService mScheduler;
+    private boolean mClosed;
+
+    /**
+     * Create a watcher, tracking the files and dependents of all artifacts
+     * materialized until the last watcher is closed.
+     * <p>
+     * Artifacts materialized while no watcher was open are not tracked. So if no
+     * other watcher is open, <b>all cached artifacts are dropped</b>, and are
+     * materialized again on their next lookup. Artifacts handed out before stay
+     * usable, but are no longer shared with later lookups. Create the watcher
+     * before resolving to avoid resolving twice.
+     */
+    public MvnWatcher() {
+        MvnDependents.acquire();
+    }
+
+    /**
+     * Watch a root artifact. The root is replaced by its new version whenever it is
+     * invalidated, or right away if it was materialized before tracking started.
+     *
+     * @param root the root artifact
+     */
+    public synchronized void addRoot(@Nonnull final MvnArtifact root) {
+        final var current = MvnArtifact.isCurrent(root)
+                ? root
+                : MvnArtifact.getArtifact(root.getCoordinate(), root.getPackaging());
+        if (!mRoots.contains(current))
+            mRoots.add(current);
+    }
+
+    public synchronized void removeRoot(@Nonnull final MvnArtifact root) {
+        mRoots.remove(root);
+    }
+
+    /**
+     * Get the current versions of all roots.
+     *
+     * @return the roots, in the order they were added
+     */
+    @Nonnull
+    public synchronized List<MvnArtifact> getRoots() {
+        return List.copyOf(mRoots);
+    }
+
+    /**
+     * Watch an additional file, e.g. a project pom outside the repository. Changes
+     * are reported to the listeners, and invalidate all artifacts derived from the
+     * file.
+     *
+     * @param file the file
+     */
+    public synchronized void watch(@Nonnull final File file) {
+        final var stamp = MvnNodeCache.Stamp.of(file.getAbsoluteFile());
+        mFiles.putIfAbsent(stamp.path(), stamp);
+    }
+
+    public void addListener(@Nonnull final Consumer<Change> listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@Nonnull final Consumer<Change> listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Check all tracked files for changes, invalidate the affected artifacts and
+     * resolve the invalidated roots again. Listeners are notified on the calling
+     * thread.
+     *
+     * @return the change, or null if nothing changed or the watcher is closed
+     */
+    @Nullable
+    public Change poll() {
+        final Change change;
+        synchronized (this) {
+            if (mClosed)
+                return null;
+
+            final Set<String> files = new LinkedHashSet<>(MvnDependents.getChangedFiles());
+            for (final var entry : mFiles.entrySet())
+                if (!entry.getValue().isValid()) {
+                    files.add(entry.getKey());
+                    entry.setValue(MvnNodeCache.Stamp.of(new File(entry.getKey())));
+                }
+
+            final var invalidated = MvnArtifact.invalidate(files);
+
+            // roots may also have been invalidated by another watcher
+            var replaced = false;
+            for (int i = 0; i < mRoots.size(); ++i) {
+                final var root = mRoots.get(i);
+                if (MvnArtifact.isCurrent(root))
+                    continue;
+                mRoots.set(i, MvnArtifact.getArtifact(root.getCoordinate(), root.getPackaging()));
+                replaced = true;
+            }
+
+            if (files.isEmpty() && !replaced)
+                return null;
+
+            change = new Change(
+                    Collections.unmodifiableSet(files),
+                    Collections.unmodifiableSet(invalidated),
+                    List.copyOf(mRoots));
+        }
+
+        MvnTools.getLogger().info(() -> "Invalidated %d artifacts after %d changed files".formatted(
+                change.invalidated().size(),
+                change.files().size()));
+
+        for (final var listener : mListeners)
+            try {
+                listener.accept(change);
+            } catch (final RuntimeException e) {
+                MvnTools.getLogger().warning(() -> "Change listener failed: %s".formatted(e));
+            }
+        return change;
+    }
+
+    /**
+     * Start polling periodically on a background thread. Does nothing if polling
+     * already started, or the watcher is closed.
+     *
+     * @param interval the interval between two polls
+     */
+    public synchronized void start(@Nonnull final Duration interval) {
+        if (mClosed || mScheduler != null)
+            return;
+
+        mScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "mvntools-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (final RuntimeException e) {
+                MvnTools.getLogger().warning(() -> "Failed to poll for changes: %s".formatted(e));
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling, and stop tracking if this is the last open watcher. A closed
+     * watcher no longer detects changes.
+     */
+    @Override
+    public synchronized void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+
+        if (mScheduler != null) {
+            mScheduler.shutdownNow();
+            mScheduler = null;
+        }
+        MvnDependents.release();
+    }
+}
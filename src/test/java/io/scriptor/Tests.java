@@ -1,9 +1,46 @@
 package io.scriptor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class Tests {
 
@@ -27,4 +64,1320 @@ public class Tests {
         assertTrue(root.isComplete());
         MvnTools.getLogger().info(() -> "%n%s".formatted(root.toTree()));
     }
+
+    @Test
+    @DisplayName("Mediated Classpath")
+    void testClasspath(@TempDir final Path repository) throws IOException {
+        // lib 1.0 and 2.0 are at the same depth, x declares its version first, and
+        // lib 3.0 is deeper. the dependencies of lib 2.0 must not be followed
+        final var dependency = "<dependency><groupId>com.example</groupId><artifactId>%s</artifactId><version>%s</version></dependency>";
+        writeProject(repository, "root", "1.0", "<dependencies>%s%s</dependencies>"
+                .formatted(dependency.formatted("x", "1.0"), dependency.formatted("y", "1.0")));
+        writeProject(repository, "x", "1.0", "<dependencies>%s</dependencies>"
+                .formatted(dependency.formatted("lib", "1.0")));
+        writeProject(repository, "y", "1.0", "<dependencies>%s%s</dependencies>"
+                .formatted(dependency.formatted("lib", "2.0"), dependency.formatted("z", "1.0")));
+        writeProject(repository, "z", "1.0", "<dependencies>%s</dependencies>"
+                .formatted(dependency.formatted("lib", "3.0")));
+        writeProject(repository, "lib", "1.0", "");
+        writeProject(repository, "lib", "2.0", "<dependencies>%s</dependencies>"
+                .formatted(dependency.formatted("extra", "1.0")));
+        writeProject(repository, "lib", "3.0", "");
+        writeProject(repository, "extra", "1.0", "");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var root = MvnArtifact.getArtifact("com.example:root:1.0");
+            final var classpath = root.getClasspath();
+            assertSame(classpath, root.getClasspath());
+
+            assertEquals(
+                    List.of("root:1.0", "x:1.0", "y:1.0", "lib:1.0", "z:1.0"),
+                    classpath.getArtifacts().stream().map(artifact -> artifact.getArtifactId() + ':' + artifact.getVersion()).toList());
+            assertEquals(
+                    Map.of(MvnCoordinate.of("com.example", "lib", null), List.of(
+                            MvnArtifact.getArtifact("com.example:lib:2.0"),
+                            MvnArtifact.getArtifact("com.example:lib:3.0"))),
+                    classpath.getOmitted());
+            assertEquals(
+                    classpath.getArtifacts().stream().map(MvnArtifact::getPackageFile).toList(),
+                    classpath.getFiles());
+            assertEquals(5, classpath.toString().split(File.pathSeparator).length);
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Download From File Repository")
+    void testHttpTransport(@TempDir final Path remote, @TempDir final Path local) throws IOException {
+        final var valid = Files.createDirectories(remote.resolve("com/example/valid/1.0"));
+        Files.writeString(valid.resolve("valid-1.0.pom"), "<project/>");
+        Files.writeString(valid.resolve("valid-1.0.pom.sha1"), "31a6e1717665b9fb4646a906d52abae65a7eefbc");
+        Files.writeString(valid.resolve("valid-1.0.jar"), "jar");
+        final var plugin = Files.createDirectories(remote.resolve("com/example/plugin/1.0"));
+        Files.writeString(plugin.resolve("plugin-1.0.pom"), "<project/>");
+        Files.writeString(plugin.resolve("plugin-1.0.jar"), "plugin");
+
+        final var broken = Files.createDirectories(remote.resolve("com/example/broken/1.0"));
+        Files.writeString(broken.resolve("broken-1.0.pom"), "<proj");
+        Files.writeString(broken.resolve("broken-1.0.pom.sha1"), "31a6e1717665b9fb4646a906d52abae65a7eefbc");
+
+        final var transport = new MvnHttpTransport(remote.toUri(), local.toFile(), 2);
+        assertTrue(transport.fetch(List.of("com.example:valid:jar:1.0"), false));
+        assertEquals("<project/>", Files.readString(local.resolve("com/example/valid/1.0/valid-1.0.pom")));
+        assertTrue(Files.exists(local.resolve("com/example/valid/1.0/valid-1.0.pom.sha1")));
+        assertEquals("jar", Files.readString(local.resolve("com/example/valid/1.0/valid-1.0.jar")));
+
+        // plugins and bundles are packaged as jars
+        assertTrue(transport.fetch(List.of("com.example:plugin:maven-plugin:1.0"), false));
+        assertEquals("plugin", Files.readString(local.resolve("com/example/plugin/1.0/plugin-1.0.jar")));
+
+        assertFalse(transport.fetch(List.of("com.example:broken:jar:1.0"), true));
+        try (final var files = Files.list(local.resolve("com/example/broken/1.0"))) {
+            assertEquals(0, files.count());
+        }
+
+        transport.close();
+        assertFalse(transport.fetch(List.of("com.example:valid:jar:1.0"), false));
+    }
+
+    @Test
+    @DisplayName("Negative Cache And Offline Mode")
+    void testNegativeCache(@TempDir final Path repository, @TempDir final Path cache) throws IOException {
+        final var fetches = new AtomicInteger();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> {
+            fetches.incrementAndGet();
+            return false;
+        });
+        try {
+            assertFalse(MvnTools.fetchArtifact("com.example", "missing", "jar", "1.0", true));
+            assertFalse(MvnTools.fetchArtifact("com.example", "missing", "bundle", "1.0", true));
+            assertEquals(1, fetches.get());
+            assertTrue(Files.readString(cache.resolve("failures.properties")).contains("com.example\\:missing\\:pom\\:1.0"));
+
+            final var marked = Files.createDirectories(repository.resolve("com/example/marked/1.0"));
+            Files.writeString(marked.resolve("marked-1.0.pom.lastUpdated"), "");
+            assertFalse(MvnTools.fetchArtifact("com.example", "marked", "jar", "1.0", true));
+            assertEquals(1, fetches.get());
+
+            MvnTools.setOffline(true);
+            assertFalse(MvnTools.fetchArtifact("com.example", "other", "jar", "1.0", true));
+            assertEquals(1, fetches.get());
+            MvnTools.setOffline(false);
+
+            MvnTools.clearNegativeCache();
+            assertFalse(MvnTools.fetchArtifact("com.example", "missing", "jar", "1.0", true));
+            assertEquals(2, fetches.get());
+        } finally {
+            MvnTools.setOffline(false);
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Incremental Re-Resolution")
+    void testWatcher(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b");
+        writePom(repository, "b");
+        writePom(repository, "c");
+        writePom(repository, "d");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        // resolved before tracking may have started
+        final var stale = MvnArtifact.getArtifact("com.example:a:1.0");
+        try (final var watcher = new MvnWatcher()) {
+            watcher.addRoot(stale);
+            final var a = watcher.getRoots().get(0);
+            assertTrue(MvnArtifact.isCurrent(a));
+            final var d = MvnArtifact.getArtifact("com.example:d:1.0");
+            assertNull(watcher.poll());
+
+            final List<MvnWatcher.Change> changes = new ArrayList<>();
+            watcher.addListener(changes::add);
+
+            final var b = writePom(repository, "b", "c");
+            Files.setLastModifiedTime(b, FileTime.fromMillis(Files.getLastModifiedTime(b).toMillis() + 2000));
+
+            final var change = watcher.poll();
+            assertNotNull(change);
+            assertEquals(List.of(change), changes);
+            assertEquals(Set.of(b.toFile().getAbsolutePath()), change.files());
+            assertTrue(change.invalidated().contains(a.getCoordinate()));
+            assertFalse(change.invalidated().contains(d.getCoordinate()));
+
+            final var updated = watcher.getRoots().get(0);
+            assertNotSame(a, updated);
+            assertEquals("com.example:c:jar:1.0", updated.getDependencies()[0].getDependencies()[0].getId());
+            assertSame(d, MvnArtifact.getArtifact("com.example:d:1.0"));
+            assertNull(watcher.poll());
+
+            // tracking stops with the last watcher only
+            final var other = new MvnWatcher();
+            other.close();
+            assertTrue(MvnDependents.isTracking());
+            watcher.close();
+            assertFalse(MvnDependents.isTracking());
+            assertTrue(MvnDependents.getChangedFiles().isEmpty());
+            assertNull(watcher.poll());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Batch Resolution")
+    void testBatch(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b");
+        writePom(repository, "b", "d");
+        writePom(repository, "c", "b");
+        writePom(repository, "d");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var graph = MvnArtifact.getArtifacts(List.of("com.example:a:1.0", "com.example:c:1.0", "com.example:a:1.0"));
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var b = MvnArtifact.getArtifact("com.example:b:1.0");
+            final var c = MvnArtifact.getArtifact("com.example:c:1.0");
+            final var d = MvnArtifact.getArtifact("com.example:d:1.0");
+
+            assertEquals(List.of(a, c), graph.getRoots());
+            assertEquals(4, graph.getArtifacts().size());
+            assertEquals(List.of(d), graph.getDependencies(b));
+            assertEquals(List.of(a, c), graph.getRoots(d));
+            assertEquals(List.of(c), graph.getRoots(c));
+            assertEquals(List.of(c, b, d), graph.getClosure(c));
+            assertEquals(c.getClosure(), graph.getClosure(c));
+            assertThrows(IllegalArgumentException.class, () -> graph.getClosure(b));
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Batch Fetching")
+    void testBatchFetcher(@TempDir final Path repository, @TempDir final Path cache, @TempDir final Path bin) throws Exception {
+        assumeTrue(File.separatorChar == '/');
+
+        // a stub maven, logging every invocation and failing any batch declaring "bad"
+        final var log = bin.resolve("log");
+        final var pom = "%s/com/example/$a/1.0/$a-1.0.pom".formatted(repository);
+        final var mvn = writeScript(bin.resolve("mvn"), """
+                #!/bin/sh
+                if [ "$1" = dependency:resolve ]; then
+                  ids=$(tr -d ' \\n' < pom.xml | grep -o '<artifactId>[^<]*</artifactId><type>[^<]*</type>' \\
+                    | sed 's|<artifactId>\\([^<]*\\)</artifactId><type>\\([^<]*\\)</type>|\\1:\\2|' | tr '\\n' ' ')
+                  echo resolve $ids >> %1$s
+                  case " $ids " in *" bad:"*) exit 1;; esac
+                  for id in $ids; do a=${id%%%%:*}; mkdir -p $(dirname %2$s); touch %2$s; done
+                else
+                  for x in "$@"; do case $x in -DartifactId=*) a=${x#-DartifactId=};; esac; done
+                  echo get $a >> %1$s
+                  [ "$a" = slow ] && sleep 1
+                  [ "$a" = bad ] && exit 1
+                  mkdir -p $(dirname %2$s); touch %2$s
+                fi
+                """.formatted(log, pom));
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setExecutable(mvn.toString());
+        try {
+            // a wave costs one invocation, and packagings are declared as types
+            assertTrue(MvnTools.fetchArtifacts(List.of("com.example:a:jar:1.0", "com.example:b:bundle:1.0", "com.example:c:jar:1.0"), true));
+            assertEquals(List.of("resolve a:jar b:jar c:jar"), Files.readAllLines(log));
+
+            // requests arriving while a batch runs are fetched together in the next one
+            final var slow = new Thread(() -> MvnTools.fetchArtifacts(List.of("com.example:slow:jar:1.0"), true));
+            slow.start();
+            while (Files.readAllLines(log).size() < 2)
+                Thread.sleep(10);
+            final var e = new Thread(() -> MvnTools.fetchArtifacts(List.of("com.example:e:jar:1.0"), true));
+            final var f = new Thread(() -> MvnTools.fetchArtifacts(List.of("com.example:f:jar:1.0"), true));
+            e.start();
+            f.start();
+            slow.join();
+            e.join();
+            f.join();
+            final var waves = Files.readAllLines(log);
+            assertEquals(3, waves.size());
+            assertTrue(Set.of("resolve e:jar f:jar", "resolve f:jar e:jar").contains(waves.get(2)), waves.get(2));
+
+            // a failing batch is split in halves, down to single requests
+            Files.delete(log);
+            assertFalse(MvnTools.fetchArtifacts(List.of(
+                    "com.example:g:jar:1.0",
+                    "com.example:h:jar:1.0",
+                    "com.example:bad:jar:1.0",
+                    "com.example:i:jar:1.0"), true));
+            assertEquals(List.of(
+                    "resolve g:jar h:jar bad:jar i:jar",
+                    "resolve g:jar h:jar",
+                    "resolve bad:jar i:jar",
+                    "get bad",
+                    "get i"), Files.readAllLines(log));
+            for (final var id : List.of("g", "h", "i"))
+                assertTrue(Files.exists(repository.resolve("com/example/%1$s/1.0/%1$s-1.0.pom".formatted(id))));
+
+            // the failed request is remembered
+            assertFalse(MvnTools.fetchArtifacts(List.of("com.example:bad:jar:1.0"), true));
+            assertEquals(5, Files.readAllLines(log).size());
+        } finally {
+            MvnTools.setExecutable(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Graph Index")
+    void testGraphIndex(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b", "c");
+        writePom(repository, "b", "d");
+        writePom(repository, "c", "b");
+        writePom(repository, "d");
+        writePom(repository, "e", "d");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var built = MvnArtifact.getArtifacts(List.of("com.example:a:1.0", "com.example:e:1.0")).buildIndex();
+
+            final var out = new ByteArrayOutputStream();
+            built.write(out);
+            out.write(42);
+            final var in = new ByteArrayInputStream(out.toByteArray());
+            final var read = MvnGraphIndex.read(in);
+            assertEquals(42, in.read());
+
+            for (final var index : List.of(built, read)) {
+                assertEquals(5, index.size());
+                assertEquals(List.of("com.example:a:jar:1.0", "com.example:e:jar:1.0"), index.getRoots());
+                assertEquals(List.of("com.example:a:jar:1.0", "com.example:c:jar:1.0"), index.getDependents("com.example:b:1.0"));
+                assertEquals(List.of("com.example:a:jar:1.0", "com.example:e:jar:1.0"), index.getRoots("com.example:d:1.0"));
+                assertEquals(4, index.countDependents("com.example:d:1.0"));
+                assertEquals(
+                        List.of("com.example:e:jar:1.0", "com.example:d:jar:1.0"),
+                        index.getShortestPath("com.example:d:jar:1.0"));
+                assertEquals(3, index.getPaths("com.example:d:1.0", 10).size());
+                assertEquals(1, index.getPaths("com.example:d:1.0", 1).size());
+                assertEquals(List.of(), index.getShortestPath("com.example:x:1.0"));
+            }
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Render Graph Source")
+    void testRenderDot(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b");
+        writePom(repository, "b");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var file = repository.resolve("out/graph.dot");
+            MvnTools.renderGraph(a, file.toFile(), MvnGraphFormat.DOT);
+
+            final var expected = new StringBuilder();
+            a.writeGraph(expected, false, Integer.MAX_VALUE);
+            assertEquals(expected.toString(), Files.readString(file));
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Render Graph Cache")
+    void testRenderCache(@TempDir final Path repository, @TempDir final Path cache, @TempDir final Path bin) throws IOException {
+        assumeTrue(File.separatorChar == '/');
+        writePom(repository, "a", "b");
+        writePom(repository, "b");
+
+        // a stub dot, logging every invocation and writing the source as output
+        final var log = bin.resolve("log");
+        final var dot = writeScript(bin.resolve("dot"), """
+                #!/bin/sh
+                echo "$@" >> %s
+                for x in "$@"; do case $x in -o*) out=${x#-o};; esac; done
+                cat > "$out"
+                """.formatted(log));
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        MvnTools.setDotExecutable(dot.toString());
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var source = new StringBuilder();
+            a.writeGraph(source, false, Integer.MAX_VALUE);
+
+            final var first = repository.resolve("out/first.svg");
+            MvnTools.renderGraph(a, first.toFile(), MvnGraphFormat.SVG);
+            assertEquals(source.toString(), Files.readString(first));
+            assertEquals(1, Files.readAllLines(log).size());
+            assertTrue(Files.readAllLines(log).get(0).startsWith("-Kdot -Tsvg "));
+
+            // the same graph is served from the cache
+            final var second = repository.resolve("out/second.svg");
+            MvnTools.renderGraph(a, second.toFile(), MvnGraphFormat.SVG);
+            assertEquals(source.toString(), Files.readString(second));
+            assertEquals(1, Files.readAllLines(log).size());
+
+            // large graphs are laid out by force
+            MvnRenderer.render(source.toString(), MvnRenderer.LARGE_GRAPH + 1, MvnGraphFormat.SVG, repository.resolve("out/large.svg").toFile());
+            assertEquals(2, Files.readAllLines(log).size());
+            assertTrue(Files.readAllLines(log).get(1).startsWith("-Ksfdp -Tsvg -Goverlap=prism "));
+            try (final var files = Files.list(cache.resolve("render"))) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            MvnTools.setDotExecutable(null);
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Cycles And Deep Parent Chains")
+    void testCycles(@TempDir final Path repository) throws Exception {
+        writePom(repository, "a", "b");
+        writePom(repository, "b", "a");
+        writeChildPom(repository, "p1", "p2");
+        writeChildPom(repository, "p2", "p1");
+
+        final var depth = 200;
+        for (int i = 0; i < depth; ++i)
+            writeChildPom(repository, "chain" + i, "chain" + (i + 1));
+        writePom(repository, "chain" + depth);
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            assertEquals(List.of(List.of(a, MvnArtifact.getArtifact("com.example:b:1.0"))), a.getCycles());
+
+            final var e = assertThrows(IllegalStateException.class, () -> MvnArtifact.getArtifact("com.example:p1:pom:1.0"));
+            assertTrue(e.getMessage().contains("com.example:p2:pom:1.0 -> com.example:p1:pom:1.0"));
+
+            // the chain is prepared on a stack far too small to recurse through it
+            final List<MvnArtifact> parents = new ArrayList<>();
+            final var thread = new Thread(null, () -> {
+                var artifact = MvnArtifact.getArtifact("com.example:chain0:pom:1.0");
+                while (artifact != null) {
+                    parents.add(artifact);
+                    artifact = artifact.getParent();
+                }
+            }, "deep", 256 * 1024);
+            thread.start();
+            thread.join();
+            assertEquals(depth + 1, parents.size());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Bulk Package Access")
+    void testPackages(@TempDir final Path repository, @TempDir final Path target) throws IOException {
+        writePom(repository, "a", "b");
+        writePom(repository, "b");
+        writeJar(repository.resolve("com/example/a/1.0/a-1.0.jar"), "META-INF/services/com.example.Service");
+        writeJar(repository.resolve("com/example/b/1.0/b-1.0.jar"), "b.txt");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var b = MvnArtifact.getArtifact("com.example:b:1.0");
+            final var packages = MvnPackages.of(a, 2);
+            assertEquals(List.of(a, b), packages.getArtifacts());
+            assertEquals(Map.of(b, List.of("b.txt")), packages.list(name -> name.endsWith(".txt")));
+
+            final var manifests = packages.visit(
+                    name -> name.equals("META-INF/MANIFEST.MF"),
+                    (artifact, entry, stream) -> artifact);
+            assertEquals(List.of(a, b), manifests.stream().map(MvnPackages.Visited::value).toList());
+
+            final var extracted = packages.extract(name -> true, target);
+            assertEquals(
+                    List.of("META-INF/MANIFEST.MF", "META-INF/services/com.example.Service", "b.txt"),
+                    List.copyOf(extracted.keySet()));
+            assertSame(a, extracted.get("META-INF/MANIFEST.MF"));
+            assertSame(b, extracted.get("b.txt"));
+            assertEquals("b.txt", Files.readString(target.resolve("b.txt")));
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Checksum Verification")
+    void testChecksums(@TempDir final Path repository, @TempDir final Path cache) throws Exception {
+        writePom(repository, "a");
+        final var jar = writeJar(repository.resolve("com/example/a/1.0/a-1.0.jar"), "a.txt").toPath();
+        final var intact = Files.readAllBytes(jar);
+        Files.writeString(
+                jar.resolveSibling("a-1.0.jar.sha1"),
+                HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(intact)) + "  a-1.0.jar");
+
+        final var fetches = new AtomicInteger();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> {
+            fetches.incrementAndGet();
+            try {
+                Files.write(jar, intact);
+                return true;
+            } catch (final IOException e) {
+                return false;
+            }
+        });
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var results = MvnChecksums.verify(a);
+            assertEquals(2, results.size());
+            assertEquals(MvnChecksums.Status.UNVERIFIED, results.get(0).status());
+            assertEquals(MvnChecksums.Status.VERIFIED, results.get(1).status());
+            assertTrue(Files.readString(cache.resolve("digests.properties")).contains(results.get(1).actual()));
+
+            // an interrupted fetch left a truncated jar behind, while the pool still
+            // holds the previous one open
+            try (final var lease = a.leasePackage()) {
+                assertNotNull(lease.getJar().getEntry("a.txt"));
+            }
+            final var pooled = MvnTools.getJarPool().acquire(jar.toFile());
+            pooled.close();
+            Files.write(jar, Arrays.copyOf(intact, intact.length / 2));
+            assertEquals(MvnChecksums.Status.MISMATCH, MvnChecksums.verify(jar.toFile()).status());
+
+            MvnTools.setVerifyingChecksums(true);
+            try (final var lease = a.leasePackage()) {
+                assertNotSame(pooled.getJar(), lease.getJar());
+                assertNotNull(lease.getJar().getEntry("a.txt"));
+            }
+            assertEquals(1, fetches.get());
+            assertEquals(MvnChecksums.Status.VERIFIED, MvnChecksums.verify(jar.toFile()).status());
+        } finally {
+            MvnTools.setVerifyingChecksums(false);
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Graph Cache Round Trip")
+    void testNodeCache(@TempDir final Path dir) throws IOException {
+        final var pom = Files.writeString(dir.resolve("demo-1.0.pom"), "<project/>").toFile();
+        final var node = new MvnNodeCache.Node(
+                List.of(MvnNodeCache.Stamp.of(pom)),
+                "com.example",
+                "demo",
+                "jar",
+                "1.0",
+                new MvnArtifact.Coordinates("com.example", "parent", "pom", "1"),
+                Map.of("demo.version", "1.0", "unset", ""),
+                Map.of("com.example:managed", new MvnPropertyScope.Managed(null, "${demo.version}", "test", null)),
+                List.of(new MvnArtifact.Coordinates("com.example", "bom", "pom", "2")),
+                List.of(new MvnArtifact.Edge(
+                        new MvnArtifact.Coordinates("com.example", "dep", "jar", null),
+                        "runtime",
+                        true,
+                        List.of("com.example:excluded", "org.example:*"))));
+
+        final var file = dir.resolve("cache/demo-1.0.node").toFile();
+        MvnNodeCache.write(file, node);
+        final var read = MvnNodeCache.read(file);
+        assertEquals(node, read);
+        assertTrue(read.stamps().get(0).isValid());
+
+        Files.writeString(pom.toPath(), "<project></project>");
+        assertFalse(read.stamps().get(0).isValid());
+    }
+
+    @Test
+    @DisplayName("Warm Start From The Graph Cache")
+    void testWarmStart(@TempDir final Path repository, @TempDir final Path cache) throws IOException {
+        writePom(repository, "a", "b");
+        writePom(repository, "b", "c");
+        writePom(repository, "c");
+        writePom(repository, "d");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            var before = MvnStatistics.snapshot();
+            assertEquals(3, MvnArtifact.getArtifact("com.example:a:1.0").getClosure().size());
+            var after = MvnStatistics.snapshot();
+            assertEquals(3, after.parses().count() - before.parses().count());
+            assertEquals(3, after.nodes().misses() - before.nodes().misses());
+
+            // a warm start reads every node from disk, without parsing a single pom
+            MvnTools.clearCaches();
+            before = MvnStatistics.snapshot();
+            assertEquals(3, MvnArtifact.getArtifact("com.example:a:1.0").getClosure().size());
+            after = MvnStatistics.snapshot();
+            assertEquals(0, after.parses().count() - before.parses().count());
+            assertEquals(3, after.nodes().hits() - before.nodes().hits());
+
+            // a changed pom invalidates its node only
+            final var b = writePom(repository, "b", "c", "d");
+            Files.setLastModifiedTime(b, FileTime.fromMillis(Files.getLastModifiedTime(b).toMillis() + 2000));
+            MvnTools.clearCaches();
+            before = MvnStatistics.snapshot();
+            assertEquals(4, MvnArtifact.getArtifact("com.example:a:1.0").getClosure().size());
+            after = MvnStatistics.snapshot();
+            assertEquals(2, after.parses().count() - before.parses().count());
+            assertEquals(2, after.nodes().hits() - before.nodes().hits());
+            assertEquals(2, after.nodes().misses() - before.nodes().misses());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Jar Pool Eviction")
+    void testJarPool(@TempDir final Path dir) throws IOException {
+        final var a = writeJar(dir.resolve("a.jar"), "a.txt");
+        final var b = writeJar(dir.resolve("b.jar"), "b.txt");
+
+        try (final var pool = new MvnJarPool(1)) {
+            final var leaseA = pool.acquire(a);
+            try (final var leaseB = pool.acquire(b)) {
+                // both are leased, so none of them can be evicted
+                assertEquals(2, pool.size());
+                assertNotNull(leaseB.getJar().getEntry("b.txt"));
+            }
+            assertEquals(1, pool.size());
+
+            try (final var again = pool.acquire(a)) {
+                assertSame(leaseA.getJar(), again.getJar());
+            }
+            leaseA.close();
+
+            assertEquals(1, pool.getHits());
+            assertEquals(2, pool.getMisses());
+            assertEquals(1, pool.getEvictions());
+        }
+    }
+
+    @Test
+    @DisplayName("Read Central Directory")
+    void testCentralDirectory(@TempDir final Path dir) throws IOException {
+        final var jar = writeJar(dir.resolve("a.jar"), "io/scriptor/Demo.class");
+        assertEquals(
+                List.of("META-INF/MANIFEST.MF", "io/scriptor/Demo.class"),
+                MvnClassIndex.readCentralDirectory(jar));
+
+        // claim more entries than there are, and a name running past the directory
+        final var bytes = Files.readAllBytes(jar.toPath());
+        final var eocd = bytes.length - 22;
+        final var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final var cen = buffer.getInt(eocd + 16);
+
+        final var count = bytes.clone();
+        ByteBuffer.wrap(count).order(ByteOrder.LITTLE_ENDIAN).putShort(eocd + 10, (short) 5);
+        final var name = bytes.clone();
+        ByteBuffer.wrap(name).order(ByteOrder.LITTLE_ENDIAN).putShort(cen + 28, (short) 0xffff);
+
+        for (final var malformed : List.of(count, name)) {
+            final var file = Files.write(dir.resolve("malformed.jar"), malformed).toFile();
+            assertThrows(IOException.class, () -> MvnClassIndex.readCentralDirectory(file));
+        }
+    }
+
+    @Test
+    @DisplayName("Class Index")
+    void testClassIndex(@TempDir final Path repository, @TempDir final Path cache) throws IOException {
+        // names whose modified utf-8 form exceeds the limit of writeUTF
+        final var longName = "io/" + "\uD83D\uDE00".repeat(16000) + ".class";
+
+        writePom(repository, "a", "b", "c");
+        writePom(repository, "b");
+        writePom(repository, "c");
+        writeJar(repository.resolve("com/example/a/1.0/a-1.0.jar"), "io/scriptor/A.class");
+        writeJar(repository.resolve("com/example/b/1.0/b-1.0.jar"), "io/scriptor/Shared.class");
+        final var c = writeJar(repository.resolve("com/example/c/1.0/c-1.0.jar"), "io/scriptor/Shared.class", longName);
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var root = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var b = MvnArtifact.getArtifact("com.example:b:1.0");
+            final var index = MvnClassIndex.build(root);
+
+            assertEquals(List.of(root, b, MvnArtifact.getArtifact("com.example:c:1.0")), index.getArtifacts());
+            assertEquals(List.of(root), index.findClass("io.scriptor.A"));
+            assertEquals(List.of(), index.findClass("io.scriptor.Missing"));
+            assertEquals(3, index.findResource("META-INF/MANIFEST.MF").size());
+            assertEquals(Set.of("io.scriptor.Shared"), index.getDuplicateClasses().keySet());
+            assertEquals(List.of(b, index.getArtifacts().get(2)), index.getDuplicateClasses().get("io.scriptor.Shared"));
+            assertEquals(1, index.findResource(longName).size());
+
+            // an unchanged jar is not read again, so corrupting it in place goes unnoticed
+            final var modified = Files.getLastModifiedTime(c.toPath());
+            Files.write(c.toPath(), new byte[(int) c.length()]);
+            Files.setLastModifiedTime(c.toPath(), modified);
+            final var cached = MvnClassIndex.build(root);
+            assertEquals(index.getDuplicateClasses(), cached.getDuplicateClasses());
+            assertEquals(1, cached.findResource(longName).size());
+
+            // a changed jar is read again
+            Files.setLastModifiedTime(c.toPath(), FileTime.fromMillis(modified.toMillis() + 2000));
+            assertEquals(Map.of(), MvnClassIndex.build(root).getDuplicateClasses());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Layered Property Interpolation")
+    void testPropertyScope() {
+        final var bom = new MvnPropertyScope(
+                Map.of("lib.version", "2.0"),
+                Map.of("com.example:lib", new MvnPropertyScope.Managed(null, "${lib.version}", null, null)),
+                null,
+                List.of());
+        final var parent = new MvnPropertyScope(
+                Map.of("project.version", "1.0", "tag", "${project.version}-${flavor}", "flavor", "parent"),
+                Map.of("com.example:app", new MvnPropertyScope.Managed(null, "${project.version}", null, null)),
+                null,
+                List.of());
+        final var child = new MvnPropertyScope(
+                Map.of("project.version", "1.1", "flavor", "child", "key", "flavor", "a", "${b}", "b", "${a}"),
+                Map.of("com.example:missing", new MvnPropertyScope.Managed(null, "${missing.version}", null, null)),
+                parent,
+                List.of(bom));
+
+        // inherited values are interpolated in the inheriting scope
+        assertEquals("1.1-child", child.get("tag"));
+        assertEquals("1.0-parent", parent.get("tag"));
+        assertEquals("1.1", child.getManaged("com.example:app").version());
+
+        // imported values are interpolated in their own scope
+        assertEquals("2.0", child.get("lib.version"));
+        assertEquals("2.0", child.getManaged("com.example:lib").version());
+
+        assertEquals("v-child", child.interpolate("v-${${key}}"));
+        assertEquals("${unterminated", child.interpolate("${unterminated"));
+
+        // undefined expressions are kept literally, only absent values are null
+        assertEquals("${missing}", child.interpolate("${missing}"));
+        assertEquals("1.1-${missing}", child.interpolate("${project.version}-${missing}"));
+        assertEquals("${lib.child.${missing}}", child.interpolate("${lib.${flavor}.${missing}}"));
+        assertEquals("${missing.version}", child.getManaged("com.example:missing").version());
+        assertEquals("${a}", child.get("a"));
+        assertNull(child.get("missing"));
+        assertNull(child.interpolate(null));
+    }
+
+    @Test
+    @DisplayName("Flight Recorder Events And Statistics")
+    void testInstrumentation(@TempDir final Path dir) throws IOException {
+        final var pom = dir.resolve("instrumented-1.0.pom");
+        Files.writeString(pom, "<project><artifactId>instrumented</artifactId></project>");
+
+        final var before = MvnStatistics.snapshot();
+        final var file = dir.resolve("recording.jfr");
+        try (final var recording = new Recording()) {
+            recording.enable("io.scriptor.PomParse");
+            recording.enable("io.scriptor.CacheLookup");
+            recording.start();
+            MvnTools.getModel(pom.toFile());
+            MvnTools.getModel(pom.toFile());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final var events = RecordingFile.readAllEvents(file);
+        assertEquals(1, events.stream()
+                .filter(event -> event.getEventType().getName().equals("io.scriptor.PomParse"))
+                .filter(event -> event.getString("pom").equals(pom.toFile().getAbsolutePath()))
+                .count());
+        assertTrue(events.stream()
+                .filter(event -> event.getEventType().getName().equals("io.scriptor.CacheLookup"))
+                .anyMatch(event -> event.getString("cache").equals("model") && event.getBoolean("hit")));
+
+        final var after = MvnStatistics.snapshot();
+        assertTrue(after.parses().count() > before.parses().count());
+        assertTrue(after.models().hits() > before.models().hits());
+        assertEquals(after.parses().count(), after.toMap().get("parse.count"));
+    }
+
+    @Test
+    @DisplayName("Scopes And Exclusions")
+    void testExclusions() {
+        assertTrue(MvnScope.COMPILE.includes("compile"));
+        assertFalse(MvnScope.COMPILE.includes("runtime"));
+        assertTrue(MvnScope.RUNTIME.includes("runtime"));
+        assertFalse(MvnScope.RUNTIME.includes("test"));
+        assertFalse(MvnScope.RUNTIME.includes("provided"));
+
+        assertSame(MvnExclusions.NONE, MvnExclusions.NONE.with(List.of()));
+
+        final var exclusions = MvnExclusions.NONE
+                .with(List.of("com.example:a"))
+                .with(List.of("org.example:*", "*:b"));
+        assertTrue(exclusions.excludes("com.example", "a"));
+        assertFalse(exclusions.excludes("com.example", "c"));
+        assertTrue(exclusions.excludes("org.example", "c"));
+        assertTrue(exclusions.excludes("net.example", "b"));
+        assertFalse(MvnExclusions.NONE.excludes("com.example", "a"));
+    }
+
+    @Test
+    @DisplayName("Excluded And Out Of Scope Subtrees")
+    void testSkippedSubtrees(@TempDir final Path repository, @TempDir final Path cache) throws IOException {
+        // only a, b and d exist, fetching anything else fails
+        writeProject(repository, "a", "1.0", """
+                <dependencies>
+                    <dependency><groupId>com.example</groupId><artifactId>b</artifactId><version>1.0</version>
+                        <exclusions><exclusion><groupId>com.example</groupId><artifactId>c</artifactId></exclusion></exclusions>
+                    </dependency>
+                    <dependency><groupId>com.example</groupId><artifactId>t</artifactId><version>1.0</version><scope>test</scope></dependency>
+                    <dependency><groupId>com.example</groupId><artifactId>o</artifactId><version>1.0</version><optional>true</optional></dependency>
+                </dependencies>""");
+        writePom(repository, "b", "c", "d");
+        writePom(repository, "d");
+
+        final List<String> fetched = new ArrayList<>();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> {
+            synchronized (fetched) {
+                fetched.addAll(ids);
+            }
+            return false;
+        });
+        try {
+            final var before = MvnStatistics.snapshot();
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            final var after = MvnStatistics.snapshot();
+
+            assertEquals(
+                    List.of("com.example:a:jar:1.0", "com.example:b:jar:1.0", "com.example:d:jar:1.0"),
+                    a.getClosure().stream().map(MvnArtifact::getId).toList());
+            assertEquals(List.of(), fetched);
+            assertEquals(3, after.parses().count() - before.parses().count());
+            assertEquals(1, after.skippedExclusions() - before.skippedExclusions());
+            assertEquals(1, after.skippedScope() - before.skippedScope());
+            assertEquals(1, after.skippedOptional() - before.skippedOptional());
+            assertEquals(3, after.followed() - before.followed());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Interned Coordinates")
+    void testCoordinate() {
+        assertNull(MvnCoordinate.find("com.example", "interned", "1.0"));
+
+        final var coordinate = MvnCoordinate.of("com.example", "interned", "1.0");
+        assertSame(coordinate, MvnCoordinate.of(new String("com.example"), "interned", "1.0"));
+        assertSame(coordinate, MvnCoordinate.find("com.example", "interned", "1.0"));
+        assertSame(coordinate, MvnCoordinate.get(coordinate.getIndex()));
+        assertSame(coordinate.getGroupId(), MvnCoordinate.of("com.example", "other", "1.0").getGroupId());
+        assertEquals("com.example:interned:1.0", coordinate.toString());
+    }
+
+    @Test
+    @DisplayName("Version Ordering And Ranges")
+    void testVersionRange(@TempDir final Path dir) throws IOException {
+        final var ordered = List.of("1.0-alpha-1", "1.0-beta", "1.0-rc1", "1.0-SNAPSHOT", "1", "1.0-sp", "1.0.1", "1.9", "1.10");
+        for (int i = 1; i < ordered.size(); ++i)
+            assertTrue(MvnVersion.parse(ordered.get(i - 1)).compareTo(MvnVersion.parse(ordered.get(i))) < 0);
+        assertEquals(MvnVersion.parse("1.0.0.Final"), MvnVersion.parse("1"));
+
+        final var range = MvnVersionRange.parse("[1.0,1.10),[2.0]");
+        assertTrue(range.contains(MvnVersion.parse("1.9")));
+        assertFalse(range.contains(MvnVersion.parse("1.10")));
+        assertTrue(range.contains(MvnVersion.parse("2.0.0")));
+
+        final var metadata = Files.writeString(dir.resolve("maven-metadata.xml"), """
+                <metadata>
+                  <versioning>
+                    <latest>1.10</latest>
+                    <versions>
+                      <version>1.2</version>
+                      <version>1.9</version>
+                      <version>1.10</version>
+                    </versions>
+                  </versioning>
+                </metadata>
+                """);
+        final var versions = MvnVersionResolver.readMetadata(metadata.toFile())
+                .stream()
+                .map(MvnVersion::parse)
+                .toList();
+        assertEquals(MvnVersion.parse("1.9"), range.select(versions));
+        assertEquals(MvnVersion.parse("1.10"), MvnVersionRange.parse("[1.2,)").select(versions));
+    }
+
+    @Test
+    @DisplayName("Failed Range Resolution")
+    void testFailedRange(@TempDir final Path repository, @TempDir final Path cache) throws IOException {
+        writeProject(repository, "lib", "1.0", "");
+
+        final var fetches = new AtomicInteger();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setCacheDirectory(cache.toFile());
+        MvnTools.setTransport((ids, transitive) -> {
+            fetches.incrementAndGet();
+            return false;
+        });
+        try {
+            final var range = MvnCoordinate.of("com.example", "lib", "[2.0,)");
+            assertNull(MvnVersionResolver.resolve(range, "jar"));
+            assertEquals(1, fetches.get());
+
+            // remembered by the resolver itself, not only by the negative cache
+            MvnTools.clearNegativeCache();
+            assertNull(MvnVersionResolver.resolve(range, "jar"));
+            assertEquals(1, fetches.get());
+
+            // a new local version makes the range resolve again
+            writeProject(repository, "lib", "2.0", "");
+            final var dir = repository.resolve("com/example/lib");
+            Files.setLastModifiedTime(dir, FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 2000));
+            assertEquals("2.0", MvnVersionResolver.resolve(range, "jar"));
+            assertEquals(1, fetches.get());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setCacheDirectory(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent Resolution Matches Serial")
+    void testParallelism(@TempDir final Path repository) throws IOException {
+        writeProject(repository, "bom", "1.0", "<packaging>pom</packaging><dependencyManagement><dependencies>"
+                + "<dependency><groupId>com.example</groupId><artifactId>d</artifactId><version>2.0</version></dependency>"
+                + "</dependencies></dependencyManagement>");
+        writePom(repository, "d");
+        writeProject(repository, "d", "2.0", "");
+        for (int i = 0; i < 4; ++i)
+            writePom(repository, "s" + i, "d");
+
+        final var modules = 16;
+        final var dependencies = new StringBuilder();
+        for (int i = 0; i < modules; ++i) {
+            if (i + 1 < modules)
+                writePom(repository, "m" + i, "s" + i % 4, "m" + (i + 1));
+            else
+                writePom(repository, "m" + i, "s" + i % 4);
+            dependencies.append("<dependency><groupId>com.example</groupId><artifactId>m%d</artifactId><version>1.0</version></dependency>"
+                    .formatted(i));
+        }
+        writeProject(repository, "root", "1.0", "<dependencyManagement><dependencies>"
+                + "<dependency><groupId>com.example</groupId><artifactId>bom</artifactId><version>1.0</version>"
+                + "<type>pom</type><scope>import</scope></dependency>"
+                + "</dependencies></dependencyManagement><dependencies>" + dependencies
+                + "<dependency><groupId>com.example</groupId><artifactId>d</artifactId></dependency>"
+                + "</dependencies>");
+
+        final var parallelism = MvnTools.getParallelism();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        MvnTools.setGraphCaching(false);
+        try {
+            MvnTools.setParallelism(1);
+            final var serial = MvnArtifact.getArtifact("com.example:root:1.0");
+            final var tree = serial.toTree();
+            final var closure = serial.getClosure().stream().map(MvnArtifact::getId).toList();
+            assertEquals(modules + 4 + 3, closure.size());
+            assertTrue(closure.contains("com.example:d:jar:1.0"));
+            assertTrue(closure.contains("com.example:d:jar:2.0"));
+
+            MvnTools.setParallelism(8);
+            for (int run = 0; run < 5; ++run) {
+                MvnTools.clearCaches();
+                final var concurrent = MvnArtifact.getArtifact("com.example:root:1.0");
+                assertNotSame(serial, concurrent);
+                assertEquals(tree, concurrent.toTree());
+                assertEquals(closure, concurrent.getClosure().stream().map(MvnArtifact::getId).toList());
+            }
+        } finally {
+            MvnTools.setParallelism(parallelism);
+            MvnTools.setGraphCaching(true);
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Lazy Resolution")
+    void testLazyResolution(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b", "c");
+
+        // the dependencies are only in the remote repository
+        final Map<String, String[]> remote = Map.of("b", new String[]{"c"}, "c", new String[0]);
+        final List<String> fetched = new ArrayList<>();
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> {
+            for (final var id : ids) {
+                final var artifactId = id.split(":")[1];
+                fetched.add(artifactId);
+                try {
+                    writePom(repository, artifactId, remote.get(artifactId));
+                } catch (final IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        MvnTools.setLazyResolution(true);
+        try {
+            final var before = MvnStatistics.snapshot().materialized();
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            assertEquals(List.of(), fetched);
+            assertEquals(1, MvnStatistics.snapshot().materialized() - before);
+
+            final var dependencies = a.getDependencies();
+            assertEquals(List.of("b", "c"), fetched);
+            assertEquals(3, MvnStatistics.snapshot().materialized() - before);
+            assertSame(dependencies[1], dependencies[0].getDependencies()[0]);
+            final var tree = a.toTree();
+
+            MvnTools.setLazyResolution(false);
+            MvnTools.clearCaches();
+            final var eager = MvnArtifact.getArtifact("com.example:a:1.0");
+            assertNotSame(a, eager);
+            assertEquals(tree, eager.toTree());
+            assertEquals(
+                    a.getClosure().stream().map(MvnArtifact::getId).toList(),
+                    eager.getClosure().stream().map(MvnArtifact::getId).toList());
+        } finally {
+            MvnTools.setLazyResolution(false);
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Dependency Tree Output")
+    void testTree(@TempDir final Path repository) throws Exception {
+        writePom(repository, "a", "b", "c");
+        writePom(repository, "b", "d");
+        writePom(repository, "c", "d");
+        writePom(repository, "d", "e");
+        writePom(repository, "e");
+
+        final var depth = 1000;
+        for (int i = 0; i < depth; ++i)
+            writePom(repository, "chain" + i, "chain" + (i + 1));
+        writePom(repository, "chain" + depth);
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+            assertEquals("""
+                    com.example:a:jar:1.0
+                    +- com.example:b:jar:1.0
+                    |  \\- com.example:d:jar:1.0
+                    |     \\- com.example:e:jar:1.0
+                    \\- com.example:c:jar:1.0
+                       \\- com.example:d:jar:1.0
+                          \\- com.example:e:jar:1.0
+                    """, a.toTree());
+
+            final var omitted = new StringBuilder();
+            a.writeTree(omitted, true);
+            assertEquals("""
+                    com.example:a:jar:1.0
+                    +- com.example:b:jar:1.0
+                    |  \\- com.example:d:jar:1.0
+                    |     \\- com.example:e:jar:1.0
+                    \\- com.example:c:jar:1.0
+                       \\- (com.example:d:jar:1.0 - omitted for duplicate)
+                    """, omitted.toString());
+
+            // deep enough to overflow the small stack if the tree was written recursively
+            final var chain = MvnArtifact.getArtifact("com.example:chain0:1.0");
+            final var tree = new StringBuilder();
+            final var failure = new Throwable[1];
+            final var thread = new Thread(null, () -> {
+                try {
+                    chain.writeTree(tree, false);
+                } catch (final Throwable e) {
+                    failure[0] = e;
+                }
+            }, "tree", 64 << 10);
+            thread.start();
+            thread.join();
+
+            assertNull(failure[0]);
+            final var lines = tree.toString().split("\n");
+            assertEquals(depth + 1, lines.length);
+            assertEquals(" ".repeat(3 * (depth - 1)) + "\\- com.example:chain%d:jar:1.0".formatted(depth), lines[depth]);
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("DOT Graph Output")
+    void testGraph(@TempDir final Path repository) throws IOException {
+        writePom(repository, "a", "b", "c");
+        writePom(repository, "b", "d");
+        writePom(repository, "c", "d");
+        writePom(repository, "d");
+
+        MvnTools.setRepository(repository.toFile());
+        MvnTools.setTransport((ids, transitive) -> false);
+        try {
+            final var a = MvnArtifact.getArtifact("com.example:a:1.0");
+
+            final var dot = new StringBuilder();
+            assertEquals(4, a.writeGraph(dot, false, Integer.MAX_VALUE));
+            final var lines = dot.toString().lines().toList();
+            assertEquals("digraph {", lines.get(0));
+            assertEquals("}", lines.get(lines.size() - 1));
+
+            final var body = lines.subList(1, lines.size() - 1);
+            assertEquals(List.of(
+                    "  \"com.example:a:jar:1.0\";",
+                    "  \"com.example:b:jar:1.0\";",
+                    "  \"com.example:c:jar:1.0\";",
+                    "  \"com.example:d:jar:1.0\";"), body.stream().filter(line -> !line.contains("->")).toList());
+            assertEquals(List.of(
+                    "  \"com.example:a:jar:1.0\" -> \"com.example:b:jar:1.0\";",
+                    "  \"com.example:a:jar:1.0\" -> \"com.example:c:jar:1.0\";",
+                    "  \"com.example:b:jar:1.0\" -> \"com.example:d:jar:1.0\";",
+                    "  \"com.example:c:jar:1.0\" -> \"com.example:d:jar:1.0\";"), body.stream().filter(line -> line.contains("->")).toList());
+
+            final var cut = new StringBuilder();
+            a.writeGraph(cut, true, 1);
+            assertEquals(1, cut.toString().lines().filter(line -> line.contains("subgraph")).count());
+            assertEquals(3, cut.toString().lines().filter(line -> line.startsWith("    \"")).count());
+            assertEquals(2, cut.toString().lines().filter(line -> line.contains("->")).count());
+        } finally {
+            MvnTools.setTransport(null);
+            MvnTools.setRepository(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Streaming Pom Parser Matches Maven Reader")
+    void testPomParser(@TempDir final Path dir) throws Exception {
+        final var fixture = Files.writeString(dir.resolve("fixture.pom"), """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!-- a comment before the root -->
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                    <modelVersion>4.0.0</modelVersion>
+                    <parent>
+                        <groupId>com.example</groupId>
+                        <artifactId>parent</artifactId>
+                        <version>1.0</version>
+                        <relativePath>../parent/pom.xml</relativePath>
+                    </parent>
+                    <artifactId> fixture </artifactId>
+                    <packaging>bundle</packaging>
+                    <properties>
+                        <plain>value</plain>
+                        <entity>a &amp; b &lt; c</entity>
+                        <cdata><![CDATA[x <y> & z]]></cdata>
+                        <mixed>left <![CDATA[<mid>]]> right</mixed>
+                        <empty/>
+                    </properties>
+                    <dependencyManagement>
+                        <dependencies>
+                            <dependency>
+                                <groupId>com.example</groupId>
+                                <artifactId>bom</artifactId>
+                                <version>${bom.version}</version>
+                                <type>pom</type>
+                                <scope>import</scope>
+                            </dependency>
+                            <dependency>
+                                <groupId>com.example</groupId>
+                                <artifactId>managed</artifactId>
+                                <version>2.0</version>
+                                <exclusions>
+                                    <exclusion><groupId>*</groupId><artifactId>*</artifactId></exclusion>
+                                </exclusions>
+                            </dependency>
+                        </dependencies>
+                    </dependencyManagement>
+                    <dependencies>
+                        <!-- a comment between dependencies -->
+                        <dependency>
+                            <groupId>com.example</groupId>
+                            <artifactId>managed</artifactId>
+                        </dependency>
+                        <dependency>
+                            <groupId>com.example</groupId>
+                            <artifactId>full</artifactId>
+                            <version>[1.0,2.0)</version>
+                            <type>test-jar</type>
+                            <classifier>tests</classifier>
+                            <scope>test</scope>
+                            <optional>true</optional>
+                            <exclusions>
+                                <exclusion>
+                                    <groupId>org.example</groupId>
+                                    <artifactId>excluded</artifactId>
+                                </exclusion>
+                            </exclusions>
+                        </dependency>
+                    </dependencies>
+                    <build>
+                        <plugins>
+                            <plugin>
+                                <artifactId>plugin</artifactId>
+                                <dependencies>
+                                    <dependency><groupId>ignored</groupId><artifactId>ignored</artifactId></dependency>
+                                </dependencies>
+                            </plugin>
+                        </plugins>
+                    </build>
+                    <profiles>
+                        <profile>
+                            <id>ignored</id>
+                            <dependencies>
+                                <dependency><groupId>ignored</groupId><artifactId>ignored</artifactId></dependency>
+                            </dependencies>
+                        </profile>
+                    </profiles>
+                </project>
+                """).toFile();
+
+        final List<File> poms = new ArrayList<>();
+        poms.add(fixture);
+        for (final var artifact : MvnArtifact.getArtifact(ID).getClosure())
+            for (var parent = artifact; parent != null; parent = parent.getParent())
+                if (parent.getPom() != null && !poms.contains(parent.getPom()))
+                    poms.add(parent.getPom());
+
+        final var reader = new MavenXpp3Reader();
+        reader.setAddDefaultEntities(true);
+        for (final var pom : poms) {
+            final Model expected;
+            try (final var stream = Files.newInputStream(pom.toPath())) {
+                expected = reader.read(stream);
+            }
+            assertEquals(describe(expected), describe(MvnPomParser.parse(pom)), pom.toString());
+        }
+        assertTrue(describe(MvnPomParser.parse(fixture)).contains("cdata=x <y> & z"));
+    }
+
+    private static File writeJar(final Path path, final String... entries) throws IOException {
+        try (final var out = new JarOutputStream(Files.newOutputStream(path), new Manifest())) {
+            out.putNextEntry(new JarEntry("io/"));
+            out.closeEntry();
+            for (final var entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.write(entry.getBytes());
+                out.closeEntry();
+            }
+        }
+        return path.toFile();
+    }
+
+    private static Path writeScript(final Path path, final String content) throws IOException {
+        Files.writeString(path, content);
+        assertTrue(path.toFile().setExecutable(true));
+        return path;
+    }
+
+    private static Path writePom(final Path repository, final String artifactId, final String... dependencies) throws IOException {
+        final var pom = new StringBuilder()
+                .append("<project><groupId>com.example</groupId><artifactId>")
+                .append(artifactId)
+                .append("</artifactId><version>1.0</version><dependencies>");
+        for (final var dependency : dependencies)
+            pom.append("<dependency><groupId>com.example</groupId><artifactId>")
+                    .append(dependency)
+                    .append("</artifactId><version>1.0</version></dependency>");
+        pom.append("</dependencies></project>");
+
+        final var dir = Files.createDirectories(repository.resolve("com/example/%s/1.0".formatted(artifactId)));
+        return Files.writeString(dir.resolve("%s-1.0.pom".formatted(artifactId)), pom);
+    }
+
+    private static void writeChildPom(final Path repository, final String artifactId, final String parentId) throws IOException {
+        final var pom = ("<project><parent><groupId>com.example</groupId><artifactId>%s</artifactId><version>1.0</version></parent>"
+                + "<artifactId>%s</artifactId><packaging>pom</packaging></project>").formatted(parentId, artifactId);
+        final var dir = Files.createDirectories(repository.resolve("com/example/%s/1.0".formatted(artifactId)));
+        Files.writeString(dir.resolve("%s-1.0.pom".formatted(artifactId)), pom);
+    }
+
+    private static void writeProject(final Path repository, final String artifactId, final String version, final String content) throws IOException {
+        final var pom = "<project><groupId>com.example</groupId><artifactId>%s</artifactId><version>%s</version>%s</project>"
+                .formatted(artifactId, version, content);
+        final var dir = Files.createDirectories(repository.resolve("com/example/%s/%s".formatted(artifactId, version)));
+        Files.writeString(dir.resolve("%s-%s.pom".formatted(artifactId, version)), pom);
+    }
+
+    /**
+     * Describe the parts of a model the resolver reads.
+     */
+    private static String describe(final Model model) {
+        final var builder = new StringBuilder();
+        builder.append(model.getGroupId()).append(':')
+                .append(model.getArtifactId()).append(':')
+                .append(model.getPackaging()).append(':')
+                .append(model.getVersion()).append('\n');
+
+        final var parent = model.getParent();
+        if (parent != null)
+            builder.append("parent ")
+                    .append(parent.getGroupId()).append(':')
+                    .append(parent.getArtifactId()).append(':')
+                    .append(parent.getVersion()).append(' ')
+                    .append(parent.getRelativePath()).append('\n');
+
+        new TreeMap<>(model.getProperties()).forEach((key, value) -> builder.append(key).append('=').append(value).append('\n'));
+
+        final var management = model.getDependencyManagement();
+        if (management != null)
+            for (final var dependency : management.getDependencies())
+                builder.append("managed ").append(describe(dependency)).append('\n');
+        for (final var dependency : model.getDependencies())
+            builder.append(describe(dependency)).append('\n');
+        return builder.toString();
+    }
+
+    private static String describe(final Dependency dependency) {
+        final var builder = new StringBuilder()
+                .append(dependency.getGroupId()).append(':')
+                .append(dependency.getArtifactId()).append(':')
+                .append(dependency.getType()).append(':')
+                .append(dependency.getClassifier()).append(':')
+                .append(dependency.getVersion()).append(' ')
+                .append(dependency.getScope()).append(' ')
+                .append(dependency.isOptional());
+        for (final var exclusion : dependency.getExclusions())
+            builder.append(" -").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+        return builder.toString();
+    }
 }